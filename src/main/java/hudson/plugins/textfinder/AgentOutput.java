@@ -0,0 +1,241 @@
+package hudson.plugins.textfinder;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.console.LineTransformationOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterOutputStream;
+
+/**
+ * Forwards the output of searching file sets on the agent to the build log on the controller.
+ * Output is compressed and only sent once a batch is full or the caller flushes it, rather than
+ * in a remoting packet per line. Once a limit is reached, lines of output other than the messages
+ * of the plugin passed to {@link #message} are dropped and counted instead, so that a file set
+ * matching a huge number of lines cannot flood the channel.
+ *
+ * <p>The controller decompresses the output with the stream returned by {@link #receiver}, which
+ * holds it back until the caller is ready to log it, such as once the build log has been searched.
+ * Output held beyond {@link #MAX_HELD_BYTES} is spilled to a temporary file rather than memory.
+ */
+final class AgentOutput extends LineTransformationOutputStream.Delegating {
+
+    /** The maximum number of compressed bytes sent at once. */
+    private static final int BATCH_SIZE = 64 * 1024;
+
+    /** The maximum number of compressed bytes held back in memory by a {@link Receiver}. */
+    static final int MAX_HELD_BYTES = 1024 * 1024;
+
+    private final Deflater deflater;
+    private final DeflaterOutputStream compressed;
+
+    /** The maximum number of lines other than messages forwarded, or zero for no limit. */
+    private final int maxLines;
+
+    private int lines;
+    private int suppressed;
+
+    /** Whether the lines being written are a message of the plugin. */
+    private boolean message;
+
+    private AgentOutput(DeflaterOutputStream compressed, Deflater deflater, int maxLines) {
+        super(compressed);
+        this.compressed = compressed;
+        this.deflater = deflater;
+        this.maxLines = maxLines;
+    }
+
+    /**
+     * @param out The stream exported by the controller, usually a {@link
+     *     hudson.remoting.RemoteOutputStream} wrapping a {@link #receiver}.
+     * @param maxLines The maximum number of lines other than messages forwarded, or zero for no limit.
+     */
+    static AgentOutput of(OutputStream out, int maxLines) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        return new AgentOutput(new DeflaterOutputStream(out, deflater, BATCH_SIZE, true), deflater, maxLines);
+    }
+
+    /**
+     * Get the stream on the controller that decompresses the output into the build log, once
+     * {@link Receiver#release} is called.
+     *
+     * @param dir The directory of the temporary file holding output beyond {@link #MAX_HELD_BYTES},
+     *     such as the directory of the build.
+     */
+    static Receiver receiver(OutputStream logger, File dir) {
+        return receiver(logger, dir, MAX_HELD_BYTES);
+    }
+
+    static Receiver receiver(OutputStream logger, File dir, int maxHeldBytes) {
+        return new Receiver(logger, dir, maxHeldBytes);
+    }
+
+    @Override
+    protected void eol(byte[] b, int len) throws IOException {
+        if (message) {
+            out.write(b, 0, len);
+        } else if (maxLines <= 0 || lines < maxLines) {
+            lines++;
+            out.write(b, 0, len);
+        } else {
+            suppressed++;
+        }
+    }
+
+    /**
+     * Forward a message of the plugin regardless of the limit. Anything already written to the
+     * given stream is flushed first, so that it is counted as output and stays in order.
+     *
+     * @param logger The stream that writes to this one.
+     */
+    void message(PrintStream logger, String message) throws IOException {
+        logger.flush();
+        forceEol();
+        this.message = true;
+        try {
+            logger.println(message);
+            logger.flush();
+        } finally {
+            this.message = false;
+        }
+    }
+
+    /** Get the number of lines dropped since the last call, then reset it. */
+    int takeSuppressed() {
+        int taken = suppressed;
+        suppressed = 0;
+        return taken;
+    }
+
+    /** Send the rest of the output and release the compressor, without closing the underlying stream. */
+    void finish() throws IOException {
+        try {
+            forceEol();
+            compressed.finish();
+            out.flush();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses the output on the controller. It must be finished or discarded rather than
+     * closed once the agent is done, since closing it would close the build log.
+     */
+    static final class Receiver extends OutputStream {
+
+        private final InflaterOutputStream inflater;
+        private final File dir;
+        private final int maxHeldBytes;
+
+        /** The compressed output held back in memory, or {@code null} once spilled or released. */
+        @CheckForNull
+        private ByteArrayOutputStream held = new ByteArrayOutputStream();
+
+        /** The file holding the compressed output held back beyond the limit, if any. */
+        @CheckForNull
+        private File spillFile;
+
+        @CheckForNull
+        private OutputStream spill;
+
+        private boolean released;
+        private boolean discarded;
+
+        private Receiver(OutputStream logger, File dir, int maxHeldBytes) {
+            this.inflater = new InflaterOutputStream(logger);
+            this.dir = dir;
+            this.maxHeldBytes = maxHeldBytes;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (discarded) {
+                return;
+            }
+            if (released) {
+                inflater.write(b, off, len);
+                return;
+            }
+            if (held != null && held.size() + len > maxHeldBytes) {
+                spillFile = File.createTempFile("text-finder", ".tmp", dir);
+                spill = new BufferedOutputStream(Files.newOutputStream(spillFile.toPath()));
+                held.writeTo(spill);
+                held = null;
+            }
+            if (held != null) {
+                held.write(b, off, len);
+            } else {
+                spill.write(b, off, len);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (released) {
+                inflater.flush();
+            }
+        }
+
+        /** Log the output held back so far, and log any further output as it arrives. */
+        synchronized void release() throws IOException {
+            if (released || discarded) {
+                return;
+            }
+            released = true;
+            if (held != null) {
+                held.writeTo(inflater);
+                held = null;
+            } else {
+                try {
+                    spill.close();
+                    Files.copy(spillFile.toPath(), inflater);
+                } finally {
+                    deleteSpill();
+                }
+            }
+        }
+
+        /** Log the rest of the output, if it has been released, or else discard it. */
+        synchronized void finish() throws IOException {
+            if (released) {
+                inflater.finish();
+            } else {
+                discard();
+            }
+        }
+
+        /** Drop the output held back so far, and any further output. */
+        synchronized void discard() {
+            discarded = true;
+            held = null;
+            try {
+                deleteSpill();
+            } catch (IOException e) {
+                // Nothing more can be done about a temporary file that cannot be deleted.
+            }
+        }
+
+        private void deleteSpill() throws IOException {
+            if (spill != null) {
+                try {
+                    spill.close();
+                } finally {
+                    spill = null;
+                    Files.deleteIfExists(spillFile.toPath());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package hudson.plugins.textfinder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An Aho-Corasick automaton that finds which of a set of literals occur in a line in a single pass,
+ * regardless of how many literals there are. The automaton is compiled into a dense transition
+ * table over the characters that actually occur in the literals; every other character leads to
+ * the same transitions.
+ */
+final class AhoCorasick {
+
+    /**
+     * The number of literals from which a single pass with the automaton is preferred over
+     * searching for each literal in turn.
+     */
+    static final int MIN_LITERALS = 4;
+
+    /** The column used for characters that do not occur in any literal. */
+    private static final int OTHER = 0;
+
+    /** Column of each ASCII character, or {@link #OTHER}. */
+    private final int[] asciiColumns = new int[128];
+
+    /** Column of each non-ASCII character occurring in a literal. */
+    private final Map<Character, Integer> columns = new HashMap<>();
+
+    private final int width;
+
+    /** The next state for each state and column. */
+    private final int[] transitions;
+
+    /** The literals recognized in each state, or {@code null} if none. */
+    private final int[][] outputs;
+
+    private final int count;
+
+    /**
+     * Build an automaton if there are enough literals for it to pay off.
+     *
+     * @return The automaton, or {@code null} if there are fewer than {@link #MIN_LITERALS} literals.
+     */
+    static AhoCorasick of(String[] literals) {
+        return Arrays.stream(literals).filter(Objects::nonNull).count() >= MIN_LITERALS
+                ? new AhoCorasick(literals)
+                : null;
+    }
+
+    /**
+     * @param literals The literals to search for; {@code null} entries are ignored and are never
+     *     reported as found.
+     */
+    AhoCorasick(String[] literals) {
+        int width = 1;
+        for (String literal : literals) {
+            if (literal == null) {
+                continue;
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (column(c) == OTHER) {
+                    if (c < asciiColumns.length) {
+                        asciiColumns[c] = width++;
+                    } else {
+                        columns.put(c, width++);
+                    }
+                }
+            }
+        }
+        this.width = width;
+
+        // Build the trie.
+        List<int[]> gotos = new ArrayList<>();
+        List<List<Integer>> matches = new ArrayList<>();
+        gotos.add(new int[width]);
+        matches.add(new ArrayList<>());
+        int count = 0;
+        for (int l = 0; l < literals.length; l++) {
+            String literal = literals[l];
+            if (literal == null) {
+                continue;
+            }
+            count++;
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int column = column(literal.charAt(i));
+                if (gotos.get(state)[column] == 0) {
+                    gotos.get(state)[column] = gotos.size();
+                    gotos.add(new int[width]);
+                    matches.add(new ArrayList<>());
+                }
+                state = gotos.get(state)[column];
+            }
+            matches.get(state).add(l);
+        }
+        this.count = count;
+
+        // Resolve failure links breadth first, turning the trie into a complete transition table.
+        int states = gotos.size();
+        int[] failure = new int[states];
+        transitions = new int[states * width];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int column = 0; column < width; column++) {
+            int next = gotos.get(0)[column];
+            transitions[column] = next;
+            if (next != 0) {
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            matches.get(state).addAll(matches.get(failure[state]));
+            for (int column = 0; column < width; column++) {
+                int next = gotos.get(state)[column];
+                if (next != 0) {
+                    failure[next] = transitions[failure[state] * width + column];
+                    transitions[state * width + column] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * width + column] = transitions[failure[state] * width + column];
+                }
+            }
+        }
+
+        outputs = new int[states][];
+        for (int state = 0; state < states; state++) {
+            List<Integer> match = matches.get(state);
+            if (!match.isEmpty()) {
+                outputs[state] = match.stream().distinct().mapToInt(Integer::intValue).toArray();
+            }
+        }
+    }
+
+    /**
+     * Find the literals occurring in a line.
+     *
+     * @param found Set for each literal that occurs; entries for other literals are cleared.
+     */
+    void find(CharSequence line, boolean[] found) {
+        Arrays.fill(found, false);
+        int remaining = count;
+        int state = 0;
+        for (int i = 0; i < line.length() && remaining > 0; i++) {
+            state = transitions[state * width + column(line.charAt(i))];
+            remaining -= mark(state, found);
+        }
+    }
+
+    /**
+     * Find the literals occurring between two positions of a buffer. Each byte is treated as the
+     * character with the same value, so this only finds literals consisting of ASCII characters in
+     * text using an ASCII-compatible charset.
+     *
+     * @param found Set for each literal that occurs; entries for other literals are cleared.
+     */
+    void find(ByteBuffer buffer, int start, int end, boolean[] found) {
+        Arrays.fill(found, false);
+        int remaining = count;
+        int state = 0;
+        for (int i = start; i < end && remaining > 0; i++) {
+            int b = buffer.get(i);
+            state = transitions[state * width + (b >= 0 ? asciiColumns[b] : OTHER)];
+            remaining -= mark(state, found);
+        }
+    }
+
+    private int mark(int state, boolean[] found) {
+        int[] output = outputs[state];
+        if (output == null) {
+            return 0;
+        }
+        int marked = 0;
+        for (int literal : output) {
+            if (!found[literal]) {
+                found[literal] = true;
+                marked++;
+            }
+        }
+        return marked;
+    }
+
+    private int column(char c) {
+        if (c < asciiColumns.length) {
+            return asciiColumns[c];
+        }
+        Integer column = columns.get(c);
+        return column != null ? column : OTHER;
+    }
+}
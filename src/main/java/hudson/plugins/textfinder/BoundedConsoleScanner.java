@@ -0,0 +1,237 @@
+package hudson.plugins.textfinder;
+
+import hudson.model.Run;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Searches the console log of a build up to a given length, usually its length before the publisher
+ * logged anything, so that lines logged by the search itself are never searched. Only a window at
+ * the end of that part of the log is searched if the scope has a tail, and optionally the windows
+ * before it in turn, seeking past the rest of the log so that it is never read. Windows start and
+ * end at line boundaries.
+ *
+ * <p>Large windows may be split into ranges that start and end at line boundaries and are searched
+ * concurrently. The ranges are merged in order, so the output and the result are the same as those
+ * of a sequential search.
+ *
+ * <p>Only charsets that encode the ASCII range as single bytes are supported; see {@link
+ * MappedFileScanner#isSupported}.
+ */
+final class BoundedConsoleScanner {
+
+    /** The number of bytes read at a time when counting lines backwards. */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final byte LF = '\n';
+
+    private final Run<?, ?> run;
+    private final Charset charset;
+    private final ConsoleScope scope;
+    private final int parallelism;
+    private final long minRangeSize;
+
+    /**
+     * @param parallelism The maximum number of ranges of a window that are searched concurrently.
+     * @param minRangeSize The minimum number of bytes in each range, below which splitting a window
+     *     does not pay off.
+     */
+    BoundedConsoleScanner(Run<?, ?> run, Charset charset, ConsoleScope scope, int parallelism, long minRangeSize) {
+        this.run = run;
+        this.charset = charset;
+        this.scope = scope;
+        this.parallelism = parallelism;
+        this.minRangeSize = Math.max(1L, minRangeSize);
+    }
+
+    /**
+     * Search the console log, starting with the window that ends at the given length and then, if
+     * {@link ConsoleScope#isTailBackwards}, the windows before it until every pattern has been
+     * found or abandoned. Without a tail, the window is the whole log up to that length.
+     *
+     * @param length The length of the log to search; a line that starts before it is searched in full.
+     */
+    void scan(LineMatcher matcher, long length) throws IOException {
+        long end = length;
+        do {
+            long start = windowStart(end);
+            scanWindow(start, end, matcher);
+            end = start;
+        } while (scope.isTailBackwards() && end > 0 && !matcher.isDecided());
+    }
+
+    /** Find the start of the window that ends at the given line boundary. */
+    private long windowStart(long end) throws IOException {
+        long start = 0;
+        if (scope.getTailLines() > 0) {
+            start = lineStart(end, scope.getTailLines());
+        }
+        if (scope.getTailBytes() > 0 && end - start > scope.getTailBytes()) {
+            long bytesStart = end - scope.getTailBytes();
+            start = nextLineStart(bytesStart);
+            if (start >= end) {
+                // A single line is longer than the window, so search as much of it as fits.
+                start = bytesStart;
+            }
+        }
+        return start;
+    }
+
+    /** Find the start of the first line that starts at or after the given offset. */
+    private long nextLineStart(long offset) throws IOException {
+        if (offset == 0) {
+            return 0;
+        }
+        try (InputStream in = run.getLogInputStream()) {
+            // Start one byte early, so that a line starting exactly at the offset is not skipped.
+            in.skipNBytes(offset - 1);
+            ConsoleLineReader reader = new ConsoleLineReader(in, charset, offset - 1);
+            reader.skipLine();
+            return reader.getOffset();
+        }
+    }
+
+    /**
+     * Find the start of the given number of lines before a line boundary. The log is read backwards
+     * in spans that double in size, each read forward with a single stream, so that the number of
+     * times the log is opened only grows with the logarithm of the distance. A compressed log can
+     * only be read from its start, so opening it for every chunk would make the search quadratic.
+     */
+    private long lineStart(long end, int lines) throws IOException {
+        // The line feed terminating the last line does not start a line within the window.
+        long spanEnd = end - 1;
+        long span = CHUNK_SIZE;
+        long remaining = lines;
+        while (spanEnd > 0) {
+            long spanStart = Math.max(0, spanEnd - span);
+            long found = countLineFeeds(spanStart, spanEnd);
+            if (found >= remaining) {
+                // The lines start after the line feed that is the given number from the end of the span.
+                return afterLineFeed(spanStart, spanEnd, found - remaining + 1);
+            }
+            remaining -= found;
+            spanEnd = spanStart;
+            span *= 2;
+        }
+        return 0;
+    }
+
+    /** Count the line feeds between the given offsets of the log. */
+    private long countLineFeeds(long from, long to) throws IOException {
+        long found = 0;
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (InputStream in = run.getLogInputStream()) {
+            in.skipNBytes(from);
+            long position = from;
+            while (position < to) {
+                int length = in.readNBytes(chunk, 0, (int) Math.min(CHUNK_SIZE, to - position));
+                if (length == 0) {
+                    break;
+                }
+                for (int i = 0; i < length; i++) {
+                    if (chunk[i] == LF) {
+                        found++;
+                    }
+                }
+                position += length;
+            }
+        }
+        return found;
+    }
+
+    /** Find the offset following the line feed with the given number, counting from 1, between the given offsets. */
+    private long afterLineFeed(long from, long to, long number) throws IOException {
+        long found = 0;
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (InputStream in = run.getLogInputStream()) {
+            in.skipNBytes(from);
+            long position = from;
+            while (position < to) {
+                int length = in.readNBytes(chunk, 0, (int) Math.min(CHUNK_SIZE, to - position));
+                if (length == 0) {
+                    break;
+                }
+                for (int i = 0; i < length; i++) {
+                    if (chunk[i] == LF && ++found == number) {
+                        return position + i + 1;
+                    }
+                }
+                position += length;
+            }
+        }
+        return from;
+    }
+
+    private void scanWindow(long start, long end, LineMatcher matcher) throws IOException {
+        int ranges = (int) Math.min(parallelism, (end - start) / minRangeSize);
+        if (ranges <= 1) {
+            scanRange(start, end, matcher, new AtomicBoolean());
+            return;
+        }
+        long[] bounds = new long[ranges + 1];
+        bounds[0] = start;
+        bounds[ranges] = end;
+        for (int i = 1; i < ranges; i++) {
+            bounds[i] = Math.min(nextLineStart(start + (end - start) / ranges * i), end);
+        }
+
+        /*
+         * The first range is searched by this thread, logging as it goes. The others are searched
+         * by forks whose output is logged once every range before them has been merged, so that
+         * the first match reported is still the earliest. Once every pattern has been found, the
+         * remaining ranges are abandoned.
+         */
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ForkJoinPool pool = new ForkJoinPool(ranges - 1);
+        try {
+            List<Future<LineMatcher>> forks = new ArrayList<>(ranges - 1);
+            for (int i = 1; i < ranges; i++) {
+                long rangeStart = bounds[i];
+                long rangeEnd = bounds[i + 1];
+                forks.add(pool.submit(() -> {
+                    LineMatcher fork = matcher.fork();
+                    scanRange(rangeStart, rangeEnd, fork, cancelled);
+                    return fork;
+                }));
+            }
+            scanRange(bounds[0], bounds[1], matcher, cancelled);
+            for (Future<LineMatcher> fork : forks) {
+                if (matcher.isDone()) {
+                    break;
+                }
+                try {
+                    matcher.merge(fork.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while searching console output", e);
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to search console output", e.getCause());
+                }
+            }
+        } finally {
+            cancelled.set(true);
+            pool.shutdownNow();
+        }
+    }
+
+    private void scanRange(long start, long end, LineMatcher matcher, AtomicBoolean cancelled) throws IOException {
+        try (InputStream in = run.getLogInputStream()) {
+            in.skipNBytes(start);
+            ConsoleLineReader reader = new ConsoleLineReader(in, charset, start);
+            String line;
+            while (!matcher.isDone()
+                    && !cancelled.get()
+                    && reader.getOffset() < end
+                    && (line = reader.readLine()) != null) {
+                matcher.match(line);
+            }
+        }
+    }
+}
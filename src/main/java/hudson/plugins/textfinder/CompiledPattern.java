@@ -0,0 +1,121 @@
+package hudson.plugins.textfinder;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.PrintStream;
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression compiled by one of the engines a finder can select. Expressions that are
+ * plain strings are matched with a substring search without involving the engine at all, and
+ * other expressions are only evaluated on lines containing the literal text they require.
+ */
+abstract class CompiledPattern {
+
+    private final String regexp;
+
+    /** The literal text every match must contain, or {@code null} if unknown. */
+    private final String requiredLiteral;
+
+    /** Whether the expression matches exactly {@link #requiredLiteral}. */
+    private final boolean literal;
+
+    private CompiledPattern(String regexp, boolean analyze) {
+        this.regexp = regexp;
+        PatternAnalyzer analyzer = analyze ? PatternAnalyzer.analyze(regexp) : null;
+        this.requiredLiteral = analyzer != null ? analyzer.getRequiredLiteral() : null;
+        this.literal = analyzer != null && analyzer.isExact();
+    }
+
+    /**
+     * Compile a regular expression with the given engine.
+     *
+     * @param logger Used to report a fallback to the Java engine, or {@code null} if it has already
+     *     been reported.
+     * @throws java.util.regex.PatternSyntaxException if the expression is not valid.
+     */
+    static CompiledPattern compile(String regexp, TextFinderRegexEngine engine, @CheckForNull PrintStream logger) {
+        if (engine == TextFinderRegexEngine.RE2J) {
+            try {
+                return new Re2j(regexp, com.google.re2j.Pattern.compile(regexp));
+            } catch (com.google.re2j.PatternSyntaxException e) {
+                /*
+                 * RE2/J does not support backreferences, lookaround and possessive quantifiers,
+                 * among others. Let the Java engine either accept the expression or report the
+                 * syntax error.
+                 */
+                Pattern pattern = Pattern.compile(regexp);
+                if (logger != null) {
+                    logger.println("[Text Finder] Regular expression '"
+                            + regexp
+                            + "' is not supported by RE2/J; falling back to java.util.regex");
+                }
+                return new Java(pattern);
+            }
+        }
+        return new Java(Pattern.compile(regexp));
+    }
+
+    String pattern() {
+        return regexp;
+    }
+
+    /**
+     * Get the literal text that every match of the expression contains, if known. Lines that do not
+     * contain it cannot match.
+     */
+    String getRequiredLiteral() {
+        return requiredLiteral;
+    }
+
+    /**
+     * Whether the expression matches any part of a line.
+     *
+     * @param budget Bounds the time spent in the regular expression engine.
+     */
+    boolean find(CharSequence line, MatchBudget budget) {
+        if (requiredLiteral != null && !contains(line, requiredLiteral)) {
+            return false;
+        }
+        return literal || find(budget.wrap(line));
+    }
+
+    /** Whether the expression matches any part of the input, using the regular expression engine. */
+    abstract boolean find(CharSequence input);
+
+    @Override
+    public String toString() {
+        return regexp;
+    }
+
+    private static boolean contains(CharSequence line, String literal) {
+        return line.toString().contains(literal);
+    }
+
+    private static final class Java extends CompiledPattern {
+        private final Pattern pattern;
+
+        Java(Pattern pattern) {
+            super(pattern.pattern(), pattern.flags() == 0);
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean find(CharSequence input) {
+            return pattern.matcher(input).find();
+        }
+    }
+
+    private static final class Re2j extends CompiledPattern {
+        private final com.google.re2j.Pattern pattern;
+
+        Re2j(String regexp, com.google.re2j.Pattern pattern) {
+            super(regexp, pattern.flags() == 0);
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean find(CharSequence input) {
+            return pattern.matcher(input).find();
+        }
+    }
+}
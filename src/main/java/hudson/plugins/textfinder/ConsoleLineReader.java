@@ -0,0 +1,204 @@
+package hudson.plugins.textfinder;
+
+import hudson.console.ConsoleNote;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a raw console log, stripping them of their console notes in the byte domain.
+ * Lines without an escape character, which are the vast majority, are decoded directly from the
+ * read buffer without any further work. Lines are terminated the same way as by {@link
+ * java.io.BufferedReader#readLine}. Also reads the lines of other files, along with their offsets,
+ * if created by {@link #forFile}.
+ *
+ * <p>Only charsets that encode the ASCII range as single bytes are supported; see {@link
+ * MappedFileScanner#isSupported}.
+ */
+final class ConsoleLineReader implements Closeable {
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte ESC = 0x1B;
+
+    private final InputStream in;
+    private final Charset charset;
+    private final boolean removeNotes;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+
+    /** The offset in the console log of the start of {@link #buffer}. */
+    private long bufferOffset;
+
+    /** Accumulates a line that spans more than one read. */
+    private byte[] line = new byte[256];
+
+    /** Whether a line feed following the last line, which was terminated by a carriage return, should be skipped. */
+    private boolean skipLF;
+
+    ConsoleLineReader(InputStream in, Charset charset) {
+        this(in, charset, 0L);
+    }
+
+    /** @param offset The offset in the console log at which the stream starts. */
+    ConsoleLineReader(InputStream in, Charset charset, long offset) {
+        this(in, charset, offset, true);
+    }
+
+    private ConsoleLineReader(InputStream in, Charset charset, long offset, boolean removeNotes) {
+        this.in = in;
+        this.charset = charset;
+        this.bufferOffset = offset;
+        this.removeNotes = removeNotes;
+    }
+
+    /**
+     * Read the lines of a file other than a console log, leaving any console notes in place.
+     *
+     * @param offset The offset in the file at which the stream starts.
+     */
+    static ConsoleLineReader forFile(InputStream in, Charset charset, long offset) {
+        return new ConsoleLineReader(in, charset, offset, false);
+    }
+
+    /**
+     * Get the offset in the console log of the start of the next line, including all of the line
+     * terminator of the last line read.
+     */
+    long getOffset() throws IOException {
+        if (skipLF && (position < limit || fill()) && buffer[position] == LF) {
+            position++;
+        }
+        skipLF = false;
+        return bufferOffset + position;
+    }
+
+    /** Skip the rest of the current line, so that reading continues at the start of the next line. */
+    void skipLine() throws IOException {
+        readLine();
+    }
+
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        limit = in.read(buffer);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Read the next line, stripped of its line terminator and console notes.
+     *
+     * @return The line, or {@code null} at the end of the log.
+     */
+    String readLine() throws IOException {
+        int length = 0;
+        boolean partial = false;
+        while (true) {
+            if (position >= limit && !fill()) {
+                return partial ? decode(line, 0, length) : null;
+            }
+            if (skipLF) {
+                skipLF = false;
+                if (buffer[position] == LF) {
+                    position++;
+                    continue;
+                }
+            }
+            int start = position;
+            int end = start;
+            while (end < limit && buffer[end] != LF && buffer[end] != CR) {
+                end++;
+            }
+            if (end == limit) {
+                length = append(start, end, length);
+                partial = true;
+                position = limit;
+                continue;
+            }
+            position = end + 1;
+            skipLF = buffer[end] == CR;
+            if (!partial) {
+                return decode(buffer, start, end);
+            }
+            length = append(start, end, length);
+            return decode(line, 0, length);
+        }
+    }
+
+    private int append(int start, int end, int length) {
+        int newLength = length + end - start;
+        if (newLength > line.length) {
+            line = Arrays.copyOf(line, Math.max(newLength, line.length * 2));
+        }
+        System.arraycopy(buffer, start, line, length, end - start);
+        return newLength;
+    }
+
+    private String decode(byte[] b, int start, int end) {
+        return new String(b, start, (removeNotes ? removeNotes(b, start, end) : end) - start, charset);
+    }
+
+    /**
+     * Strip a line of its console notes in place, with the same result as {@link
+     * ConsoleNote#removeNotes}.
+     *
+     * @return The new end of the line.
+     */
+    static int removeNotes(byte[] b, int start, int end) {
+        int from = start;
+        while (true) {
+            int preamble = indexOf(b, ConsoleNote.PREAMBLE, from, end);
+            if (preamble < 0) {
+                return end;
+            }
+            int postamble = indexOf(b, ConsoleNote.POSTAMBLE, preamble, end);
+            if (postamble < 0) {
+                return end;
+            }
+            int tail = postamble + ConsoleNote.POSTAMBLE.length;
+            System.arraycopy(b, tail, b, preamble, end - tail);
+            end -= tail - preamble;
+            // Removing the note may have joined the parts of another preamble.
+            from = Math.max(start, preamble - ConsoleNote.PREAMBLE.length + 1);
+        }
+    }
+
+    /** Whether a line contains an escape character, and might therefore contain a console note. */
+    static boolean hasEscape(byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] == ESC) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Find some bytes, all of which start with an escape character. */
+    private static int indexOf(byte[] b, byte[] target, int from, int end) {
+        outer:
+        for (int i = from; i <= end - target.length; i++) {
+            if (b[i] != ESC) {
+                continue;
+            }
+            for (int j = 1; j < target.length; j++) {
+                if (b[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,222 @@
+package hudson.plugins.textfinder;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.console.ConsoleLogFilter;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.AbstractBuild;
+import hudson.model.Run;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.PatternSyntaxException;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Searches the console output of a freestyle build for the patterns of its Text Finder publisher
+ * while the output is being written, so that the publisher can decide the build result without
+ * reading the whole console log again. Only active when {@link
+ * TextFinderPublisher#STREAMING_CONSOLE_SCAN} is set; other kinds of builds, such as Pipeline
+ * builds, whose finders are not known when the build starts, are always searched after the fact.
+ */
+@Restricted(NoExternalUse.class)
+@Extension
+public final class ConsoleScanFilter extends ConsoleLogFilter {
+
+    /** The scans of the builds in progress, until they are collected by their publisher. */
+    private static final Map<Run<?, ?>, Scan> SCANS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @Override
+    public OutputStream decorateLogger(Run build, OutputStream logger) throws IOException {
+        if (!TextFinderPublisher.STREAMING_CONSOLE_SCAN
+                || !(build instanceof AbstractBuild)
+                || !MappedFileScanner.isSupported(build.getCharset())) {
+            return logger;
+        }
+        TextFinderPublisher publisher = ((AbstractBuild<?, ?>) build)
+                .getProject()
+                .getPublishersList()
+                .get(TextFinderPublisher.class);
+        if (publisher == null) {
+            return logger;
+        }
+
+        List<Integer> indices = new ArrayList<>();
+        List<TextFinder> textFinders = publisher.getTextFinders();
+        for (int i = 0; i < textFinders.size(); i++) {
+            TextFinder textFinder = textFinders.get(i);
+            if (textFinder.isAlsoCheckConsoleOutput() && ConsoleScope.of(textFinder).isStreamable()) {
+                indices.add(i);
+            }
+        }
+        if (indices.isEmpty()) {
+            return logger;
+        }
+
+        Scan scan = new Scan(logger, publisher, indices, build.getCharset());
+        CompiledPattern[] patterns = new CompiledPattern[indices.size()];
+        for (int j = 0; j < patterns.length; j++) {
+            TextFinder textFinder = textFinders.get(indices.get(j));
+            // Leave it to the publisher to report any problems once the build is complete.
+            try {
+                patterns[j] = CompiledPattern.compile(textFinder.getRegexp(), textFinder.getRegexEngine(), null);
+            } catch (PatternSyntaxException e) {
+                return logger;
+            }
+        }
+        scan.start(patterns);
+        SCANS.put(build, scan);
+        return scan;
+    }
+
+    /**
+     * Stop searching the console output of a build and collect the result.
+     *
+     * @return The scan, or {@code null} if the console output was not searched while it was written
+     *     for this publisher, in which case it must be read again.
+     */
+    @CheckForNull
+    static Scan finish(Run<?, ?> run, TextFinderPublisher publisher) throws IOException {
+        Scan scan = SCANS.remove(run);
+        if (scan == null || scan.publisher != publisher) {
+            return null;
+        }
+        scan.finish();
+        return scan;
+    }
+
+    /**
+     * Passes the console output through unchanged while matching each complete line against the
+     * patterns of the finders that also check the console output.
+     */
+    static final class Scan extends LineTransformationOutputStream.Delegating {
+
+        private final TextFinderPublisher publisher;
+
+        /** The indices of the finders in the publisher that are searched. */
+        private final List<Integer> indices;
+
+        private final Charset charset;
+
+        /** The lines that would have been logged by reading the console log again. */
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        private final PrintStream logger;
+        private ScanResult result;
+
+        /** The offset in the console log of the first line matching each pattern, or -1. */
+        private long[] offsets;
+
+        /** The number of the first line matching each pattern, counting from 1, or 0. */
+        private long[] lines;
+
+        private LineMatcher matcher;
+        private long position;
+        private boolean finished;
+
+        Scan(OutputStream out, TextFinderPublisher publisher, List<Integer> indices, Charset charset)
+                throws IOException {
+            super(out);
+            this.publisher = publisher;
+            this.indices = indices;
+            this.charset = charset;
+            this.logger = new PrintStream(output, false, charset.name());
+        }
+
+        private void start(CompiledPattern[] patterns) {
+            result = new ScanResult(patterns.length);
+            offsets = new long[patterns.length];
+            Arrays.fill(offsets, -1L);
+            lines = new long[patterns.length];
+            /*
+             * The time limit for the whole scan is not applied, since the scan lasts as long as the
+             * build does.
+             */
+            MatchBudget budget = new MatchBudget(TextFinderPublisher.LINE_MATCH_TIMEOUT_MILLIS, 0L).start();
+            matcher = new LineMatcher(patterns, result, budget, logger, null);
+        }
+
+        @Override
+        protected synchronized void eol(byte[] b, int len) throws IOException {
+            if (!finished && !matcher.isDone()) {
+                int end = len;
+                while (end > 0 && (b[end - 1] == '\n' || b[end - 1] == '\r')) {
+                    end--;
+                }
+                /*
+                 * Strip the line of its console notes before searching; otherwise, we might
+                 * accidentally match the search string in the encoded console note. The line is
+                 * still written out as is, so it is only copied if it might contain a note.
+                 */
+                byte[] line = b;
+                if (ConsoleLineReader.hasEscape(b, 0, end)) {
+                    line = Arrays.copyOf(b, end);
+                    end = ConsoleLineReader.removeNotes(line, 0, end);
+                }
+                matcher.startLine(position);
+                matcher.match(new String(line, 0, end, charset));
+                for (int j = 0; j < offsets.length; j++) {
+                    if (offsets[j] < 0 && result.isFound(j)) {
+                        offsets[j] = position;
+                        lines[j] = matcher.getLines();
+                    }
+                }
+            }
+            position += len;
+            out.write(b, 0, len);
+        }
+
+        /** Search any incomplete last line and stop searching. */
+        private synchronized void finish() throws IOException {
+            forceEol();
+            finished = true;
+            logger.flush();
+        }
+
+        /** Log the matching lines, as a search of the console log after the fact would have. */
+        synchronized void writeOutputTo(OutputStream os) throws IOException {
+            output.writeTo(os);
+        }
+
+        /** Get the indices of the finders in the publisher that were searched for. */
+        List<Integer> getIndices() {
+            return indices;
+        }
+
+        /** Get the result, in the order of {@link #getIndices}. */
+        synchronized ScanResult getResult() {
+            return result;
+        }
+
+        /**
+         * Get the offset in the console log of the first line matching the pattern of a finder.
+         *
+         * @param i The index of the finder in the publisher.
+         * @return The offset in bytes, or -1 if the pattern was not found.
+         */
+        synchronized long getOffset(int i) {
+            int j = indices.indexOf(i);
+            return j < 0 ? -1L : offsets[j];
+        }
+
+        /**
+         * Get the number of the first line of the console log matching the pattern of a finder.
+         *
+         * @param i The index of the finder in the publisher.
+         * @return The line number, counting from 1, or 0 if the pattern was not found.
+         */
+        synchronized long getLine(int i) {
+            int j = indices.indexOf(i);
+            return j < 0 ? 0L : lines[j];
+        }
+    }
+}
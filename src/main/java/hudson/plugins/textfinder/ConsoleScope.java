@@ -0,0 +1,120 @@
+package hudson.plugins.textfinder;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.Objects;
+
+/**
+ * The part of the console output of a build that a finder searches. Finders with the same scope
+ * share a single read of the console output.
+ */
+final class ConsoleScope {
+
+    @CheckForNull
+    private final String stage;
+
+    private final long tailBytes;
+    private final int tailLines;
+    private final boolean tailBackwards;
+    private final boolean allMatches;
+
+    private ConsoleScope(
+            @CheckForNull String stage, long tailBytes, int tailLines, boolean tailBackwards, boolean allMatches) {
+        this.stage = stage;
+        this.tailBytes = tailBytes;
+        this.tailLines = tailLines;
+        this.tailBackwards = tailBackwards;
+        this.allMatches = allMatches;
+    }
+
+    static ConsoleScope of(TextFinder textFinder) {
+        if (textFinder.getConsoleStage() != null) {
+            // The tail of the console output of a stage is not supported.
+            return new ConsoleScope(textFinder.getConsoleStage(), 0L, 0, false, textFinder.isConsoleAllMatches());
+        }
+        long tailBytes = textFinder.getConsoleTailBytes();
+        int tailLines = textFinder.getConsoleTailLines();
+        boolean tailBackwards = (tailBytes > 0 || tailLines > 0) && textFinder.isConsoleTailBackwards();
+        return new ConsoleScope(null, tailBytes, tailLines, tailBackwards, textFinder.isConsoleAllMatches());
+    }
+
+    /** Get the stage whose console output is searched, or {@code null} for the whole build. */
+    @CheckForNull
+    String getStage() {
+        return stage;
+    }
+
+    /**
+     * Whether the console output can be searched while it is being written, which is only the case
+     * when the whole console output of the build is searched for the first match.
+     */
+    boolean isStreamable() {
+        return stage == null && !isTail() && !allMatches;
+    }
+
+    /** Whether only a window at the end of the console output is searched. */
+    boolean isTail() {
+        return tailBytes > 0 || tailLines > 0;
+    }
+
+    /** The maximum size of the window, or zero if not limited by size. */
+    long getTailBytes() {
+        return tailBytes;
+    }
+
+    /** The maximum number of lines in the window, or zero if not limited by lines. */
+    int getTailLines() {
+        return tailLines;
+    }
+
+    /**
+     * Whether every matching line is logged and counted, searching the console output up to its
+     * length when the search started, rather than stopping at the first match.
+     */
+    boolean isAllMatches() {
+        return allMatches;
+    }
+
+    /** Whether earlier windows are searched until every pattern has been found. */
+    boolean isTailBackwards() {
+        return tailBackwards;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ConsoleScope that = (ConsoleScope) o;
+        return tailBytes == that.tailBytes
+                && tailLines == that.tailLines
+                && tailBackwards == that.tailBackwards
+                && allMatches == that.allMatches
+                && Objects.equals(stage, that.stage);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stage, tailBytes, tailLines, tailBackwards, allMatches);
+    }
+
+    /** Describe the scope in log messages. */
+    @Override
+    public String toString() {
+        if (stage != null) {
+            return "console output of stage '" + stage + "'";
+        }
+        if (tailLines > 0 && tailBytes > 0) {
+            return "last " + tailLines + " lines or " + tailBytes + " bytes of console output";
+        }
+        if (tailLines > 0) {
+            return "last " + tailLines + " lines of console output";
+        }
+        if (tailBytes > 0) {
+            return "last " + tailBytes + " bytes of console output";
+        }
+        return "console output";
+    }
+}
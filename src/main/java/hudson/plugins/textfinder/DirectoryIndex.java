@@ -0,0 +1,119 @@
+package hudson.plugins.textfinder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the listings of the directories walked by {@link FileSetWalker} in the JVM of the agent,
+ * so that a directory is only listed again once its modification time changes. Adding, removing
+ * or renaming an entry changes the modification time of its directory, while changing the
+ * contents of a file does not matter to the walk. Since the target of a symbolic link can change
+ * without changing its directory, symbolic links are resolved again on every walk.
+ *
+ * <p>The least recently used listings are evicted once the capacity is reached.
+ */
+final class DirectoryIndex {
+
+    private static final DirectoryIndex SHARED = new DirectoryIndex(0);
+
+    /**
+     * Directories modified this recently before being listed are not cached, since another change
+     * within the resolution of the modification time would go unnoticed.
+     */
+    private static final long RACY_MILLIS = 2_000L;
+
+    private final Map<Path, Listing> listings = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Listing> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    private int capacity;
+
+    /** @param capacity The maximum number of directories whose listings are kept. */
+    DirectoryIndex(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get the index shared by all the walks in this JVM.
+     *
+     * @param capacity The maximum number of directories whose listings are kept, which replaces the
+     *     capacity given by earlier callers.
+     */
+    static DirectoryIndex shared(int capacity) {
+        synchronized (SHARED) {
+            SHARED.capacity = capacity;
+            Iterator<Path> eldest = SHARED.listings.keySet().iterator();
+            while (SHARED.listings.size() > capacity) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return SHARED;
+    }
+
+    /**
+     * List the entries of a directory, in the order in which they are walked.
+     *
+     * @param modified The modification time of the directory, read before listing it.
+     */
+    List<FileSetWalker.Entry> list(Path dir, FileTime modified) throws IOException {
+        Listing listing;
+        synchronized (this) {
+            listing = listings.get(dir);
+        }
+        if (listing != null && listing.modified.equals(modified)) {
+            return listing.resolve();
+        }
+
+        long now = System.currentTimeMillis();
+        listing = new Listing(modified, FileSetWalker.list(dir));
+        synchronized (this) {
+            if (now - modified.toMillis() >= RACY_MILLIS) {
+                listings.put(dir, listing);
+            } else {
+                listings.remove(dir);
+            }
+        }
+        return listing.entries;
+    }
+
+    private static final class Listing {
+
+        private final FileTime modified;
+        private final List<FileSetWalker.Entry> entries;
+        private final boolean symbolicLinks;
+
+        Listing(FileTime modified, List<FileSetWalker.Entry> entries) {
+            this.modified = modified;
+            this.entries = Collections.unmodifiableList(entries);
+            boolean symbolicLinks = false;
+            for (FileSetWalker.Entry entry : entries) {
+                symbolicLinks |= entry.isSymbolicLink();
+            }
+            this.symbolicLinks = symbolicLinks;
+        }
+
+        /** Get the entries, resolving symbolic links again. */
+        List<FileSetWalker.Entry> resolve() {
+            if (!symbolicLinks) {
+                return entries;
+            }
+            List<FileSetWalker.Entry> resolved = new ArrayList<>(entries.size());
+            for (FileSetWalker.Entry entry : entries) {
+                resolved.add(entry.isSymbolicLink() ? new FileSetWalker.Entry(entry.getPath()) : entry);
+            }
+            FileSetWalker.sort(resolved);
+            return resolved;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package hudson.plugins.textfinder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * The offset up to which a file that only grows between builds, such as a log, has been scanned,
+ * so that the next scan can resume there. The checkpoint is only valid as long as the part of the
+ * file before the offset is unchanged. Since reading all of it would defeat the purpose, only the
+ * head of the file and the bytes just before the offset are compared, which detects truncation and
+ * rotation but not changes elsewhere in the part already scanned.
+ */
+final class FileCheckpoint {
+
+    /** The number of bytes compared at the head of the file and before the offset. */
+    private static final int CHECKSUM_BYTES = 4096;
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private final long offset;
+    private final long lines;
+    private final long head;
+    private final long tail;
+
+    private FileCheckpoint(long offset, long lines, long head, long tail) {
+        this.offset = offset;
+        this.lines = lines;
+        this.head = head;
+        this.tail = tail;
+    }
+
+    /**
+     * Record the current contents of a file before the given offset.
+     *
+     * @param offset The start of a line, usually from {@link #lineBoundary}.
+     * @param lines The number of lines before the offset.
+     */
+    static FileCheckpoint of(FileChannel channel, long offset, long lines) throws IOException {
+        return new FileCheckpoint(
+                offset,
+                lines,
+                checksum(channel, 0, window(offset)),
+                checksum(channel, offset - window(offset), offset));
+    }
+
+    /** The offset of the start of the first line not yet scanned. */
+    long getOffset() {
+        return offset;
+    }
+
+    /** The number of lines before the offset. */
+    long getLines() {
+        return lines;
+    }
+
+    /** Whether the scan can resume at the offset, because the file has not been truncated or replaced since. */
+    boolean matches(FileChannel channel, long size) throws IOException {
+        return size >= offset
+                && checksum(channel, 0, window(offset)) == head
+                && checksum(channel, offset - window(offset), offset) == tail;
+    }
+
+    /**
+     * Find the end of the last complete line of a file, which is where the next scan can resume.
+     * A carriage return at the very end of the file is not considered the end of a line, since it
+     * may be followed by a line feed that has not been written yet.
+     *
+     * @param from Where the search stops; this offset is returned if there is no complete line after it.
+     */
+    static long lineBoundary(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BYTES);
+        long end = size;
+        while (end > from) {
+            long start = Math.max(from, end - buffer.capacity());
+            read(channel, buffer, start, end);
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                byte b = buffer.get(i);
+                if (b == LF || b == CR && start + i + 1 < size) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return from;
+    }
+
+    /** The number of bytes compared at either end of the part of the file before the offset. */
+    private static int window(long offset) {
+        return (int) Math.min(offset, CHECKSUM_BYTES);
+    }
+
+    private static long checksum(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        read(channel, buffer, start, end);
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    /** Read the given range of a file into the buffer, ready to be read from. */
+    private static void read(FileChannel channel, ByteBuffer buffer, long start, long end) throws IOException {
+        buffer.clear().limit((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at offset " + (start + buffer.position()));
+            }
+        }
+        buffer.flip();
+    }
+}
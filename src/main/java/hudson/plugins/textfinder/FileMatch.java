@@ -0,0 +1,52 @@
+package hudson.plugins.textfinder;
+
+import java.io.Serializable;
+
+/** A line of a file that matched the pattern of a finder, as reported by the agent. */
+final class FileMatch implements Serializable {
+
+    /** The maximum number of characters of a matching line that are reported. */
+    static final int MAX_LINE_LENGTH = 200;
+
+    private final String file;
+    private final long lineNumber;
+    private final long offset;
+    private final String line;
+
+    /**
+     * @param lineNumber The number of the line in the file, counting from 1.
+     * @param offset The offset in bytes of the start of the line in the file, or -1 if unknown.
+     */
+    FileMatch(String file, long lineNumber, long offset, String line) {
+        this.file = file;
+        this.lineNumber = lineNumber;
+        this.offset = offset;
+        this.line = line.length() > MAX_LINE_LENGTH ? line.substring(0, MAX_LINE_LENGTH) : line;
+    }
+
+    /** The path of the file on the agent, as logged. */
+    String getFile() {
+        return file;
+    }
+
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    /** The offset in bytes of the start of the line in the file, or -1 if unknown. */
+    long getOffset() {
+        return offset;
+    }
+
+    /** The matching line, truncated to {@link #MAX_LINE_LENGTH} characters. */
+    String getLine() {
+        return line;
+    }
+
+    @Override
+    public String toString() {
+        return file + ":" + lineNumber;
+    }
+
+    private static final long serialVersionUID = 1L;
+}
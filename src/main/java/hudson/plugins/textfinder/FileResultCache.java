@@ -0,0 +1,197 @@
+package hudson.plugins.textfinder;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches the outcome of scanning a file in the JVM of the agent, so that a file that has not
+ * changed since it was last scanned for the same patterns is not read again. The result and the
+ * output of the scan are replayed instead. A file is considered unchanged as long as its size and
+ * modification time are.
+ *
+ * <p>The outcome of scanning a file that only grows between builds can instead be kept up to a
+ * {@link FileCheckpoint}, so that only the lines appended since are scanned.
+ *
+ * <p>The least recently used outcomes are evicted once their output exceeds the capacity.
+ */
+final class FileResultCache {
+
+    private static final FileResultCache SHARED = new FileResultCache(0L);
+
+    /** How recently a file may have been modified before being scanned to be {@linkplain #isRacy racy}. */
+    private static final long RACY_MILLIS = 2_000L;
+
+    /** The approximate memory used by an outcome in addition to its output, its matches and its path. */
+    private static final long OVERHEAD = 128L;
+
+    private final Map<Key, Outcome> outcomes = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long capacity;
+    private long size;
+
+    /** @param capacity The maximum number of bytes of output kept. */
+    FileResultCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get the cache shared by all the scans in this JVM.
+     *
+     * @param capacity The maximum number of bytes of output kept, which replaces the capacity given
+     *     by earlier callers.
+     */
+    static FileResultCache shared(long capacity) {
+        synchronized (SHARED) {
+            SHARED.capacity = capacity;
+            SHARED.evict();
+        }
+        return SHARED;
+    }
+
+    /**
+     * Read the attributes of a file before scanning it.
+     *
+     * @return The attributes, or {@code null} if the file is not a regular file.
+     */
+    @CheckForNull
+    static BasicFileAttributes attributes(File file) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        return attrs.isRegularFile() ? attrs : null;
+    }
+
+    /**
+     * Whether a file was modified too recently for its size and modification time to identify its
+     * contents, since another change within the resolution of the modification time would go
+     * unnoticed.
+     */
+    static boolean isRacy(BasicFileAttributes attrs) {
+        return System.currentTimeMillis() - attrs.lastModifiedTime().toMillis() < RACY_MILLIS;
+    }
+
+    /** @param patterns Identifies the patterns the file is scanned for and how it is decoded. */
+    static Key key(File file, String patterns) {
+        return new Key(file.getAbsolutePath(), patterns);
+    }
+
+    /** @return The outcome of the last scan of the file for the same patterns, whether or not it has changed since. */
+    @CheckForNull
+    synchronized Outcome get(Key key) {
+        return outcomes.get(key);
+    }
+
+    synchronized void put(Key key, Outcome outcome) {
+        Outcome previous = outcomes.put(key, outcome);
+        if (previous != null) {
+            size -= weight(key, previous);
+        }
+        size += weight(key, outcome);
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Outcome>> eldest = outcomes.entrySet().iterator();
+        while (size > capacity && eldest.hasNext()) {
+            Map.Entry<Key, Outcome> entry = eldest.next();
+            size -= weight(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long weight(Key key, Outcome outcome) {
+        return OVERHEAD + 2L * key.path.length() + outcome.output.length + outcome.result.getReportedSize();
+    }
+
+    static final class Key {
+
+        private final String path;
+        private final String patterns;
+
+        private Key(String path, String patterns) {
+            this.path = path;
+            this.patterns = patterns;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return path.equals(that.path) && patterns.equals(that.patterns);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, patterns);
+        }
+    }
+
+    /**
+     * The result of scanning a file and the output logged by the scan, either of the whole file as
+     * it was when the scan started, or of the part before a checkpoint.
+     */
+    static final class Outcome {
+
+        private final ScanResult result;
+        private final byte[] output;
+        private final long length;
+        private final long modified;
+
+        @CheckForNull
+        private final FileCheckpoint checkpoint;
+
+        private Outcome(
+                ScanResult result, byte[] output, long length, long modified, @CheckForNull FileCheckpoint checkpoint) {
+            this.result = result;
+            this.output = output;
+            this.length = length;
+            this.modified = modified;
+            this.checkpoint = checkpoint;
+        }
+
+        /** @param attrs The attributes of the file, read before it was scanned. */
+        static Outcome of(ScanResult result, byte[] output, BasicFileAttributes attrs) {
+            return new Outcome(result, output, attrs.size(), attrs.lastModifiedTime().toMillis(), null);
+        }
+
+        /** The outcome of scanning the part of a file before a checkpoint. */
+        static Outcome of(ScanResult result, byte[] output, FileCheckpoint checkpoint) {
+            return new Outcome(result, output, -1L, -1L, checkpoint);
+        }
+
+        /** Whether this is the outcome of scanning the whole file, which has not changed since. */
+        boolean isUnchanged(BasicFileAttributes attrs) {
+            return checkpoint == null
+                    && length == attrs.size()
+                    && modified == attrs.lastModifiedTime().toMillis();
+        }
+
+        ScanResult getResult() {
+            return result;
+        }
+
+        byte[] getOutput() {
+            return output;
+        }
+
+        @CheckForNull
+        FileCheckpoint getCheckpoint() {
+            return checkpoint;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package hudson.plugins.textfinder;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The outcome of searching the file sets of all the finders of a publisher on the agent, indexed
+ * like the finders of the publisher. Along with whether the pattern of each finder was found, the
+ * first lines that matched it are reported, so that the controller does not need to scan the files
+ * again to tell where the matches are.
+ */
+final class FileSetResults implements Serializable {
+
+    private final ScanResult result;
+
+    /** Whether the file set of the finder was empty, such that it could not be searched. */
+    private final boolean[] empty;
+
+    FileSetResults(int size) {
+        this.result = new ScanResult(size);
+        this.empty = new boolean[size];
+    }
+
+    /**
+     * Record the outcome of searching a file set.
+     *
+     * @param indices The indices of the finders that searched the file set, in the order of the
+     *     patterns of the result.
+     */
+    void add(List<Integer> indices, ScanResult fileSetResult) {
+        for (int j = 0; j < indices.size(); j++) {
+            result.merge(indices.get(j), fileSetResult, j);
+        }
+    }
+
+    void setEmpty(List<Integer> indices) {
+        for (int i : indices) {
+            empty[i] = true;
+        }
+    }
+
+    boolean isFound(int i) {
+        return result.isFound(i);
+    }
+
+    boolean isTimedOut(int i) {
+        return result.isTimedOut(i);
+    }
+
+    /**
+     * The first lines that matched the pattern of the finder, up to {@link
+     * ScanResult#MAX_REPORTED_MATCHES}.
+     */
+    List<FileMatch> getReported(int i) {
+        return result.getReported(i);
+    }
+
+    /** The number of lines that matched the pattern of the finder but were not reported. */
+    int getUnreported(int i) {
+        return result.getUnreported(i);
+    }
+
+    boolean isEmpty(int i) {
+        return empty[i];
+    }
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,77 @@
+package hudson.plugins.textfinder;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The files in the workspace that a finder searches. Finders with the same scope share a single
+ * walk of the workspace and a single read of each file.
+ */
+final class FileSetScope implements Serializable {
+
+    private final String includes;
+
+    @CheckForNull
+    private final String excludes;
+
+    private final boolean defaultExcludes;
+
+    FileSetScope(String includes, @CheckForNull String excludes, boolean defaultExcludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.defaultExcludes = defaultExcludes;
+    }
+
+    /** @return The scope, or {@code null} if the finder does not search any files. */
+    @CheckForNull
+    static FileSetScope of(TextFinder textFinder) {
+        if (textFinder.getFileSet() == null) {
+            return null;
+        }
+        return new FileSetScope(textFinder.getFileSet(), textFinder.getExcludes(), textFinder.isDefaultExcludes());
+    }
+
+    String getIncludes() {
+        return includes;
+    }
+
+    @CheckForNull
+    String getExcludes() {
+        return excludes;
+    }
+
+    boolean isDefaultExcludes() {
+        return defaultExcludes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        FileSetScope that = (FileSetScope) o;
+        return defaultExcludes == that.defaultExcludes
+                && includes.equals(that.includes)
+                && Objects.equals(excludes, that.excludes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(includes, excludes, defaultExcludes);
+    }
+
+    /** Describe the scope in log messages. */
+    @Override
+    public String toString() {
+        if (excludes != null) {
+            return "file set '" + includes + "' excluding '" + excludes + "'";
+        }
+        return "file set '" + includes + "'";
+    }
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,381 @@
+package hudson.plugins.textfinder;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringTokenizer;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
+
+/**
+ * Finds the files matching an Ant-style file set by walking the directory tree, with the same
+ * result as {@link DirectoryScanner}. Files are found in sorted order one
+ * at a time, so they can be scanned while the walk continues. Directories are only entered if a
+ * file below them could be included, so a pattern such as {@code target/**}{@code /*.log} never
+ * reads the rest of the workspace, and directories that are excluded in full, such as {@code .git}
+ * or those matching an exclude pattern like {@code **}{@code /node_modules/}, are never read at all.
+ *
+ * <p>Unlike {@link DirectoryScanner}, a directory reached again through a cycle of symbolic links
+ * is skipped rather than scanned several times over, so each file is found once.
+ *
+ * <p>Patterns that are absolute or leave the base directory are not supported by the walk, in
+ * which case the file set is found with {@link DirectoryScanner} instead.
+ */
+final class FileSetWalker {
+
+    private static final boolean CASE_SENSITIVE = true;
+
+    private final String includes;
+
+    @CheckForNull
+    private final String excludes;
+
+    private final boolean defaultExcludes;
+
+    @CheckForNull
+    private final DirectoryIndex index;
+
+    private final TokenizedPattern[] includePatterns;
+    private final TokenizedPattern[] excludePatterns;
+
+    /** The exclude patterns that exclude everything below a directory, without their trailing {@code **}. */
+    private final TokenizedPattern[] contentsExcludePatterns;
+
+    /**
+     * The leading tokens of the include patterns without wildcards, from which {@link
+     * DirectoryScanner} starts scanning, or {@code null} if it scans the whole directory.
+     */
+    @CheckForNull
+    private final String[] bases;
+
+    /** @param includes The file set, as a list of patterns separated by commas or spaces. */
+    FileSetWalker(String includes) {
+        this(includes, null, true, null);
+    }
+
+    /** @param index The cache of directory listings to use, if any. */
+    FileSetWalker(FileSetScope scope, @CheckForNull DirectoryIndex index) {
+        this(scope.getIncludes(), scope.getExcludes(), scope.isDefaultExcludes(), index);
+    }
+
+    /**
+     * @param includes The file set, as a list of patterns separated by commas or spaces.
+     * @param excludes The files in the file set that are not searched, in the same format, if any.
+     * @param defaultExcludes Whether the files that {@link DirectoryScanner} excludes by default are
+     *     excluded too.
+     * @param index The cache of directory listings to use, if any.
+     */
+    FileSetWalker(
+            String includes,
+            @CheckForNull String excludes,
+            boolean defaultExcludes,
+            @CheckForNull DirectoryIndex index) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.defaultExcludes = defaultExcludes;
+        this.index = index;
+        List<String> patterns = split(includes);
+        if (patterns.isEmpty()) {
+            patterns.add(SelectorUtils.DEEP_TREE_MATCH);
+        }
+        this.includePatterns = tokenize(patterns);
+        List<String> exclusions = split(excludes);
+        if (defaultExcludes) {
+            exclusions.addAll(Arrays.asList(DirectoryScanner.getDefaultExcludes()));
+        }
+        this.excludePatterns = tokenize(exclusions);
+        List<TokenizedPattern> contentsExcludes = new ArrayList<>();
+        for (TokenizedPattern pattern : excludePatterns) {
+            if (pattern.endsWith(SelectorUtils.DEEP_TREE_MATCH)) {
+                contentsExcludes.add(pattern.withoutLastToken());
+            }
+        }
+        this.contentsExcludePatterns = contentsExcludes.toArray(new TokenizedPattern[0]);
+        String[] bases = new String[includePatterns.length];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = includePatterns[i].rtrimWildcardTokens().toString();
+            if (bases[i].isEmpty()) {
+                bases = null;
+                break;
+            }
+        }
+        this.bases = bases;
+    }
+
+    /** Split a list of patterns the same way as an Ant {@link FileSet}. */
+    private static List<String> split(@CheckForNull String patterns) {
+        List<String> result = new ArrayList<>();
+        if (patterns != null) {
+            StringTokenizer tokenizer = new StringTokenizer(patterns, ", ", false);
+            while (tokenizer.hasMoreTokens()) {
+                result.add(tokenizer.nextToken());
+            }
+        }
+        return result;
+    }
+
+    private static TokenizedPattern[] tokenize(List<String> patterns) {
+        TokenizedPattern[] result = new TokenizedPattern[patterns.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new TokenizedPattern(normalize(patterns.get(i)));
+        }
+        return result;
+    }
+
+    /** Normalize a pattern the same way as {@link DirectoryScanner}. */
+    private static String normalize(String pattern) {
+        String normalized = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (normalized.endsWith(File.separator)) {
+            normalized += SelectorUtils.DEEP_TREE_MATCH;
+        }
+        return normalized;
+    }
+
+    /**
+     * Find the files matching the file set.
+     *
+     * @return The paths of the files relative to the directory, sorted.
+     */
+    String[] walk(File dir) throws IOException, InterruptedException {
+        List<String> files = new ArrayList<>();
+        walk(dir, files::add);
+        return files.toArray(new String[0]);
+    }
+
+    /**
+     * Find the files matching the file set, passing each one to the visitor as soon as it is found,
+     * in the same order as {@link #walk(File)}. Only the entries of the directories being walked
+     * are held in memory. The walk stops before the next file or directory once the thread is
+     * interrupted.
+     *
+     * @return The number of files found.
+     */
+    int walk(File dir, Visitor visitor) throws IOException, InterruptedException {
+        if (!isWalkable()) {
+            FileSet fs = new FileSet();
+            Project p = new Project();
+            fs.setProject(p);
+            fs.setDir(dir);
+            fs.setIncludes(includes);
+            fs.setExcludes(excludes);
+            fs.setDefaultexcludes(defaultExcludes);
+            String[] files = fs.getDirectoryScanner(p).getIncludedFiles();
+            for (String file : files) {
+                checkInterrupted();
+                visitor.visit(file);
+            }
+            return files.length;
+        }
+        Path root = dir.toPath();
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(root, BasicFileAttributes.class);
+        List<Object> ancestors = new ArrayList<>();
+        ancestors.add(fileKey(root, attrs));
+        return walk(root, attrs, TokenizedPath.EMPTY_PATH, ancestors, visitor);
+    }
+
+    /**
+     * Walk a directory depth first. Sorting the entries of each directory by name, with the name
+     * of a subdirectory followed by a separator, visits the files in the same order as sorting all
+     * of their paths.
+     */
+    private int walk(
+            Path dir, BasicFileAttributes attrs, TokenizedPath dirPath, List<Object> ancestors, Visitor visitor)
+            throws IOException, InterruptedException {
+        List<Entry> entries;
+        try {
+            entries = index != null ? index.list(dir, attrs.lastModifiedTime()) : list(dir);
+        } catch (IOException e) {
+            // Unreadable directories are skipped.
+            return 0;
+        }
+
+        int found = 0;
+        for (Entry entry : entries) {
+            checkInterrupted();
+            TokenizedPath path = new TokenizedPath(dirPath, entry.name);
+            if (!entry.directory) {
+                if (isScanned(path) && isIncluded(path) && !isExcluded(path)) {
+                    visitor.visit(path.toString());
+                    found++;
+                }
+            } else if (couldHoldIncluded(path) && !contentsExcluded(path)) {
+                BasicFileAttributes childAttrs;
+                try {
+                    childAttrs = Files.readAttributes(entry.path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                Object key = fileKey(entry.path, childAttrs);
+                if (ancestors.contains(key)) {
+                    // A cycle of symbolic links.
+                    continue;
+                }
+                ancestors.add(key);
+                found += walk(entry.path, childAttrs, path, ancestors, visitor);
+                ancestors.remove(ancestors.size() - 1);
+            }
+        }
+        return found;
+    }
+
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    /** List the entries of a directory, in the order in which they are walked. */
+    static List<Entry> list(Path dir) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                entries.add(new Entry(child));
+            }
+        }
+        sort(entries);
+        return entries;
+    }
+
+    static void sort(List<Entry> entries) {
+        entries.sort(Comparator.comparing(entry -> entry.key));
+    }
+
+    /** Identify a directory, to detect cycles of symbolic links. */
+    private static Object fileKey(Path dir, BasicFileAttributes attrs) throws IOException {
+        Object key = attrs.fileKey();
+        return key != null ? key : dir.toRealPath();
+    }
+
+    /** Whether every include pattern is relative to the base directory and stays within it. */
+    private boolean isWalkable() {
+        for (TokenizedPattern pattern : includePatterns) {
+            String p = pattern.getPattern();
+            if (new File(p).isAbsolute() || p.startsWith(File.separator) || pattern.containsPattern("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether {@link DirectoryScanner} would consider a file at all: a file is only considered if it
+     * is below the base of a pattern, or if it is the base of a pattern without wildcards.
+     */
+    private boolean isScanned(TokenizedPath path) {
+        if (bases == null) {
+            return true;
+        }
+        String name = path.toString();
+        for (int i = 0; i < bases.length; i++) {
+            if (name.startsWith(bases[i] + File.separator)
+                    || name.equals(bases[i]) && !SelectorUtils.hasWildcards(includePatterns[i].getPattern())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isIncluded(TokenizedPath path) {
+        for (TokenizedPattern pattern : includePatterns) {
+            if (pattern.matchPath(path, CASE_SENSITIVE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcluded(TokenizedPath path) {
+        for (TokenizedPattern pattern : excludePatterns) {
+            if (pattern.matchPath(path, CASE_SENSITIVE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Whether an include pattern could match a file below a directory. */
+    private boolean couldHoldIncluded(TokenizedPath dir) {
+        for (TokenizedPattern pattern : includePatterns) {
+            if (pattern.matchStartOf(dir, CASE_SENSITIVE)
+                    && (pattern.containsPattern(SelectorUtils.DEEP_TREE_MATCH) || pattern.depth() > dir.depth())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Whether every file below a directory is excluded. */
+    private boolean contentsExcluded(TokenizedPath dir) {
+        for (TokenizedPattern pattern : contentsExcludePatterns) {
+            if (pattern.matchPath(dir, CASE_SENSITIVE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Receives the files found by a walk. */
+    interface Visitor {
+        void visit(String file) throws IOException, InterruptedException;
+    }
+
+    /** An entry of a directory. */
+    static final class Entry {
+
+        private final Path path;
+        private final String name;
+
+        /** Whether the entry is a directory, following symbolic links. */
+        private final boolean directory;
+
+        /** Whether the entry is a symbolic link, whose target may change without changing the directory. */
+        private final boolean symbolicLink;
+
+        private final String key;
+
+        Entry(Path path) {
+            this.path = path;
+            this.name = path.getFileName().toString();
+            boolean directory = false;
+            boolean symbolicLink = false;
+            try {
+                BasicFileAttributes attrs =
+                        Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                directory = attrs.isDirectory();
+                symbolicLink = attrs.isSymbolicLink();
+                if (symbolicLink) {
+                    directory = Files.isDirectory(path);
+                }
+            } catch (IOException e) {
+                // Treated as a file, like a dangling symbolic link.
+            }
+            this.directory = directory;
+            this.symbolicLink = symbolicLink;
+            this.key = directory ? name + File.separator : name;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        boolean isSymbolicLink() {
+            return symbolicLink;
+        }
+    }
+}
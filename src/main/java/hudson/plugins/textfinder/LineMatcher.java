@@ -0,0 +1,329 @@
+package hudson.plugins.textfinder;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates the patterns of one or more finders against the lines of a single input. Records which
+ * patterns have been found and logs each matching line once, preceded by the file name on the
+ * first match. The matching lines of a file are also reported in the result for each pattern they
+ * match, provided that the caller tracks the position of each line with {@link #startLine}.
+ */
+final class LineMatcher {
+
+    /** The number of lines of a file between checks for the interruption of the scanning thread. */
+    private static final int INTERRUPT_CHECK_LINES = 1024;
+
+    private final CompiledPattern[] patterns;
+    private final ScanResult result;
+    private final MatchBudget budget;
+    private final PrintStream logger;
+    private final File file;
+    private final boolean isConsoleLog;
+
+    /** Whether every matching line is counted, rather than stopping at the first match in the console log. */
+    private final boolean countMatches;
+
+    /** Finds the required literals of all the patterns in one pass, if there are enough of them. */
+    private final AhoCorasick literals;
+
+    private final boolean[] candidates;
+
+    /** The output of a {@link #fork}, kept until it is merged, or {@code null} if output is logged directly. */
+    private final List<Output> deferred;
+
+    /** The path of the file as it is logged and reported, or {@code null} for a console log. */
+    @CheckForNull
+    private final String path;
+
+    private boolean logFilename = true;
+    private int remaining;
+
+    /** The number of lines started so far, which is the number of the current line. */
+    private long lineNumber;
+
+    /** The offset in bytes of the current line, or -1 if unknown. */
+    private long lineOffset = -1L;
+
+    /**
+     * @param result The patterns that have already been found; updated as new matches are found.
+     * @param file The file being scanned, or {@code null} if the input represents a console log.
+     */
+    LineMatcher(
+            CompiledPattern[] patterns,
+            ScanResult result,
+            MatchBudget budget,
+            PrintStream logger,
+            @CheckForNull File file) {
+        this(patterns, result, budget, logger, file, false);
+    }
+
+    /**
+     * @param result The patterns that have already been found; updated as new matches are found.
+     * @param file The file being scanned, or {@code null} if the input represents a console log.
+     * @param countMatches Whether to evaluate every pattern against every line and count the
+     *     matching lines. A console log is then no longer abandoned once every pattern has been
+     *     found, so the caller must bound the input to avoid reading our own output forever.
+     */
+    LineMatcher(
+            CompiledPattern[] patterns,
+            ScanResult result,
+            MatchBudget budget,
+            PrintStream logger,
+            @CheckForNull File file,
+            boolean countMatches) {
+        this(patterns, result, budget, logger, file, countMatches, null);
+    }
+
+    private LineMatcher(
+            CompiledPattern[] patterns,
+            ScanResult result,
+            MatchBudget budget,
+            PrintStream logger,
+            @CheckForNull File file,
+            boolean countMatches,
+            @CheckForNull List<Output> deferred) {
+        this.patterns = patterns;
+        this.result = result;
+        this.budget = budget;
+        this.logger = logger;
+        this.file = file;
+        this.path = file != null ? file.toString() : null;
+        this.isConsoleLog = file == null;
+        this.countMatches = countMatches;
+        this.deferred = deferred;
+        String[] requiredLiterals = new String[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            if (!result.isDecided(i)) {
+                remaining++;
+            }
+            requiredLiterals[i] = patterns[i].getRequiredLiteral();
+        }
+        this.literals = AhoCorasick.of(requiredLiterals);
+        this.candidates = literals != null ? new boolean[patterns.length] : null;
+    }
+
+    /**
+     * Create a matcher for the same patterns that searches a later part of the same input, usually
+     * concurrently with this one. Its output is kept until it is passed to {@link #merge}.
+     */
+    LineMatcher fork() {
+        return new LineMatcher(
+                patterns, new ScanResult(patterns.length), budget, logger, file, countMatches, new ArrayList<>());
+    }
+
+    /**
+     * Combine the result of a fork into this matcher, logging its output as if this matcher had
+     * searched its part of the input after its own. Forks must be merged in input order.
+     */
+    void merge(LineMatcher fork) {
+        for (Output output : fork.deferred) {
+            if (output.found == null) {
+                logMessage(output.text);
+                continue;
+            }
+            // The lines of the console log are only logged if they find a pattern for the first time.
+            boolean log = !isConsoleLog || countMatches;
+            for (int i = 0; i < patterns.length; i++) {
+                if (output.found[i] && !result.isFound(i)) {
+                    if (!result.isTimedOut(i)) {
+                        remaining--;
+                    }
+                    result.setFound(i);
+                    log = true;
+                }
+            }
+            if (log) {
+                logMatch(output.text, null);
+            }
+        }
+        for (int i = 0; i < patterns.length; i++) {
+            if (fork.result.isTimedOut(i) && !result.isDecided(i)) {
+                result.setTimedOut(i);
+                remaining--;
+            }
+            result.addMatches(i, fork.result.getMatches(i));
+        }
+    }
+
+    /**
+     * Continue an earlier scan of the start of the same file.
+     *
+     * @param lines The number of lines scanned by the earlier scan.
+     * @param logged Whether the earlier scan logged any output, starting with the file name.
+     */
+    void resume(long lines, boolean logged) {
+        lineNumber = lines;
+        logFilename = !logged;
+    }
+
+    /**
+     * Record the start of the next line of the input, which must be called for every line, whether
+     * or not it is matched. Scans of files are stopped here once the thread is interrupted, such
+     * as when the build is aborted, rather than running to the end of the file.
+     *
+     * @param offset The offset in bytes of the line in the input, or -1 if unknown.
+     * @throws InterruptedIOException If the input is a file and the thread has been interrupted.
+     */
+    void startLine(long offset) throws InterruptedIOException {
+        lineNumber++;
+        lineOffset = offset;
+        if (!isConsoleLog && lineNumber % INTERRUPT_CHECK_LINES == 0 && Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while searching file '" + file + "' at line " + lineNumber);
+        }
+    }
+
+    /** The number of lines started so far. */
+    long getLines() {
+        return lineNumber;
+    }
+
+    int size() {
+        return patterns.length;
+    }
+
+    /**
+     * Get the literal text that every match of a pattern contains, if known.
+     *
+     * @return The literal, or {@code null} if every line must be evaluated.
+     */
+    String getRequiredLiteral(int i) {
+        return patterns[i].getRequiredLiteral();
+    }
+
+    /**
+     * Whether any more lines need to be examined. When searching console output, we stop as soon as
+     * every pattern has been found; otherwise, we'll loop forever.
+     */
+    boolean isDone() {
+        return isConsoleLog && !countMatches && remaining == 0;
+    }
+
+    /** Whether every pattern has been found or abandoned, such that further input cannot change the result. */
+    boolean isDecided() {
+        return remaining == 0;
+    }
+
+    /**
+     * Whether a pattern needs to be evaluated against the next line at all, allowing callers to
+     * skip decoding lines that cannot produce any output or change any result.
+     */
+    boolean isRelevant(int i) {
+        return !result.isTimedOut(i) && (!result.isFound(i) || !isConsoleLog || countMatches);
+    }
+
+    /** Evaluate all the patterns against a line. */
+    void match(CharSequence line) {
+        if (literals == null) {
+            match(line, null);
+            return;
+        }
+        literals.find(line, candidates);
+        for (int i = 0; i < patterns.length; i++) {
+            candidates[i] |= patterns[i].getRequiredLiteral() == null;
+        }
+        match(line, candidates);
+    }
+
+    /**
+     * Evaluate the patterns against a line.
+     *
+     * @param candidates The patterns that may match the line, or {@code null} to evaluate all of them.
+     */
+    void match(CharSequence line, boolean[] candidates) {
+        boolean matched = false;
+        boolean[] found = null;
+        for (int i = 0; i < patterns.length; i++) {
+            if (candidates != null && !candidates[i] || result.isTimedOut(i)) {
+                continue;
+            }
+            /*
+             * A pattern that has already been found in the console log only needs to be evaluated
+             * if the line would otherwise not be logged. The lines of a file are reported for every
+             * pattern they match.
+             */
+            if (result.isFound(i) && !countMatches && isConsoleLog) {
+                continue;
+            }
+            boolean matches;
+            try {
+                matches = patterns[i].find(line, budget);
+            } catch (MatchBudget.MatchTimeoutException e) {
+                logMessage("[Text Finder] Time budget exceeded while searching for pattern '"
+                        + patterns[i]
+                        + "' in "
+                        + (isConsoleLog ? "console output" : "file '" + file + "'")
+                        + " -- giving up on this pattern");
+                if (!result.isFound(i)) {
+                    remaining--;
+                }
+                result.setTimedOut(i);
+                continue;
+            }
+            if (matches) {
+                matched = true;
+                if (countMatches) {
+                    result.addMatch(i);
+                }
+                if (path != null && lineNumber > 0) {
+                    result.report(i, new FileMatch(path, lineNumber, lineOffset, line.toString()));
+                }
+                if (!result.isFound(i)) {
+                    result.setFound(i);
+                    remaining--;
+                    if (deferred != null) {
+                        if (found == null) {
+                            found = new boolean[patterns.length];
+                        }
+                        found[i] = true;
+                    }
+                }
+            }
+        }
+        if (matched) {
+            logMatch(line.toString(), found);
+        }
+    }
+
+    /** @param found The patterns found for the first time in the line, if the output is deferred. */
+    private void logMatch(String line, @CheckForNull boolean[] found) {
+        if (deferred != null) {
+            deferred.add(new Output(line, found != null ? found : new boolean[patterns.length]));
+            return;
+        }
+        if (logFilename) { // first occurrence
+            if (file != null) {
+                logger.println(file + ":");
+            }
+            logFilename = false;
+        }
+        logger.println(line);
+    }
+
+    private void logMessage(String message) {
+        if (deferred != null) {
+            deferred.add(new Output(message, null));
+        } else {
+            logger.println(message);
+        }
+    }
+
+    /** A line of deferred output. */
+    private static final class Output {
+
+        private final String text;
+
+        /** The patterns found for the first time in a matching line, or {@code null} for a message. */
+        @CheckForNull
+        private final boolean[] found;
+
+        Output(String text, @CheckForNull boolean[] found) {
+            this.text = text;
+            this.found = found;
+        }
+    }
+}
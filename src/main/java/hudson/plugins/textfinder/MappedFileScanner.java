@@ -0,0 +1,206 @@
+package hudson.plugins.textfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Scans a file by mapping it into memory and finding line boundaries in the byte domain. Lines are
+ * only decoded if they contain the literal text required by one of the patterns, which avoids
+ * decoding the bulk of a large file when the patterns contain plain strings.
+ *
+ * <p>Only charsets that encode the ASCII range as single bytes are supported, since line
+ * terminators and literals are searched for without decoding. Files larger than {@link
+ * #CHUNK_SIZE} are mapped one chunk at a time.
+ */
+final class MappedFileScanner {
+
+    /** The maximum number of bytes mapped at once. */
+    static final int CHUNK_SIZE = 1 << 30;
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private final LineMatcher matcher;
+    private final CharsetDecoder decoder;
+
+    /** The required literal of each pattern, or {@code null} if lines must be decoded to evaluate it. */
+    private final ByteLiteral[] literals;
+
+    /** Finds all the required literals in one pass, if there are enough of them. */
+    private final AhoCorasick automaton;
+
+    private final boolean[] candidates;
+
+    /** Whether the next chunk starts with the rest of a line whose first piece was in the previous chunk. */
+    private boolean continued;
+
+    MappedFileScanner(LineMatcher matcher, Charset charset) {
+        this.matcher = matcher;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.literals = new ByteLiteral[matcher.size()];
+        String[] asciiLiterals = new String[matcher.size()];
+        for (int i = 0; i < literals.length; i++) {
+            String literal = matcher.getRequiredLiteral(i);
+            if (literal != null && isAscii(literal)) {
+                literals[i] = new ByteLiteral(literal.getBytes(charset));
+                asciiLiterals[i] = literal;
+            }
+        }
+        this.automaton = AhoCorasick.of(asciiLiterals);
+        this.candidates = new boolean[matcher.size()];
+    }
+
+    /** Whether files in the given charset can be scanned in the byte domain. */
+    static boolean isSupported(Charset charset) {
+        byte[] ascii = new byte[0x80];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return Arrays.equals(ascii, new String(ascii, 0, ascii.length, charset).getBytes(charset));
+    }
+
+    void scan(File f) throws IOException {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            scan(channel, 0L, channel.size());
+        }
+    }
+
+    /**
+     * Scan part of a file.
+     *
+     * @param from The start of a line.
+     * @param to The end of a line, or of the file.
+     */
+    void scan(FileChannel channel, long from, long to) throws IOException {
+        long position = from;
+        while (position < to && !matcher.isDone()) {
+            long length = Math.min(CHUNK_SIZE, to - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            boolean last = position + length == to;
+            int consumed = scanChunk(buffer, position, (int) length, last);
+            position += consumed;
+        }
+    }
+
+    /**
+     * Scan the complete lines in a chunk.
+     *
+     * @param position The offset of the chunk in the file.
+     * @param last True if the chunk ends at the end of the part of the file being scanned.
+     * @return The number of bytes consumed; the next chunk starts after the last complete line.
+     */
+    private int scanChunk(ByteBuffer buffer, long position, int length, boolean last) throws IOException {
+        int start = 0;
+        int i = 0;
+        while (i < length && !matcher.isDone()) {
+            byte b = buffer.get(i);
+            if (b != LF && b != CR) {
+                i++;
+                continue;
+            }
+            if (b == CR && i + 1 == length && !last) {
+                // Cannot tell whether this is a CRLF sequence until the next chunk is mapped.
+                break;
+            }
+            startLine(position, start);
+            scanLine(buffer, start, i);
+            i += b == CR && i + 1 < length && buffer.get(i + 1) == LF ? 2 : 1;
+            start = i;
+        }
+        if (matcher.isDone()) {
+            return length;
+        }
+        if (start < length && (last || start == 0)) {
+            /*
+             * Either the final line of the file has no terminator, or a single line is longer than
+             * a chunk; in the latter case the line is evaluated in pieces.
+             */
+            startLine(position, start);
+            scanLine(buffer, start, length);
+            continued = !last;
+            return length;
+        }
+        return start;
+    }
+
+    /** Record the start of a line, unless it continues a line whose first piece was in the previous chunk. */
+    private void startLine(long position, int start) throws InterruptedIOException {
+        if (start > 0 || !continued) {
+            matcher.startLine(position + start);
+        }
+        continued = false;
+    }
+
+    private void scanLine(ByteBuffer buffer, int start, int end) throws CharacterCodingException {
+        boolean any = false;
+        if (automaton != null) {
+            automaton.find(buffer, start, end, candidates);
+        }
+        for (int i = 0; i < literals.length; i++) {
+            if (!matcher.isRelevant(i)) {
+                candidates[i] = false;
+            } else if (literals[i] == null) {
+                candidates[i] = true;
+            } else if (automaton == null) {
+                candidates[i] = literals[i].in(buffer, start, end);
+            }
+            any |= candidates[i];
+        }
+        if (any) {
+            CharBuffer line = decoder.decode(buffer.slice(start, end - start));
+            matcher.match(line.toString(), candidates);
+        }
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** A literal searched for with the Boyer-Moore-Horspool algorithm. */
+    private static final class ByteLiteral {
+        private final byte[] bytes;
+
+        /** How far the search window may advance given the byte under its last position. */
+        private final int[] shift = new int[256];
+
+        ByteLiteral(byte[] bytes) {
+            this.bytes = bytes;
+            Arrays.fill(shift, bytes.length);
+            for (int i = 0; i < bytes.length - 1; i++) {
+                shift[bytes[i] & 0xFF] = bytes.length - 1 - i;
+            }
+        }
+
+        /** Whether the literal occurs between the given positions of the buffer. */
+        boolean in(ByteBuffer buffer, int start, int end) {
+            int last = bytes.length - 1;
+            for (int i = start; i + last < end; i += shift[buffer.get(i + last) & 0xFF]) {
+                int j = last;
+                while (buffer.get(i + j) == bytes[j]) {
+                    if (j-- == 0) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
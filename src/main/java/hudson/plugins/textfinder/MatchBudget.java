@@ -0,0 +1,98 @@
+package hudson.plugins.textfinder;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the time a regular expression may spend on a single line and on a whole scan. The Java
+ * engine cannot be interrupted, so the input is wrapped in a {@link CharSequence} that checks the
+ * deadline as the engine reads characters from it.
+ */
+final class MatchBudget implements Serializable {
+
+    /** How many characters may be read between two checks of the clock. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final long lineMillis;
+    private final long scanMillis;
+    private transient long scanDeadline;
+
+    /**
+     * @param lineMillis The time allowed for matching a single line, or zero for no limit.
+     * @param scanMillis The time allowed for the whole scan, or zero for no limit.
+     */
+    MatchBudget(long lineMillis, long scanMillis) {
+        this.lineMillis = lineMillis;
+        this.scanMillis = scanMillis;
+    }
+
+    /** Start the clock for the whole scan. */
+    MatchBudget start() {
+        MatchBudget budget = new MatchBudget(lineMillis, scanMillis);
+        budget.scanDeadline = scanMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scanMillis) : 0;
+        return budget;
+    }
+
+    /**
+     * Wrap a line that is about to be matched so that reading it fails once the budget is spent.
+     *
+     * @throws MatchTimeoutException if the scan budget is already spent.
+     */
+    CharSequence wrap(CharSequence line) {
+        if (lineMillis <= 0 && scanDeadline == 0) {
+            return line;
+        }
+        long now = System.nanoTime();
+        long deadline = lineMillis > 0 ? now + TimeUnit.MILLISECONDS.toNanos(lineMillis) : scanDeadline;
+        if (scanDeadline != 0 && scanDeadline - deadline < 0) {
+            deadline = scanDeadline;
+        }
+        if (now - deadline >= 0) {
+            throw new MatchTimeoutException();
+        }
+        return new Deadline(line, deadline);
+    }
+
+    /** Thrown when a match runs past its deadline. */
+    static final class MatchTimeoutException extends RuntimeException {
+        MatchTimeoutException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Deadline implements CharSequence {
+        private final CharSequence delegate;
+        private final long deadline;
+        private int reads;
+
+        Deadline(CharSequence delegate, long deadline) {
+            this.delegate = delegate;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int length() {
+            return delegate.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++reads % CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+                throw new MatchTimeoutException();
+            }
+            return delegate.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new Deadline(delegate.subSequence(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    private static final long serialVersionUID = 1L;
+}
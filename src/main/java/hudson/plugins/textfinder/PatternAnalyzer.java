@@ -0,0 +1,258 @@
+package hudson.plugins.textfinder;
+
+/**
+ * Finds the literal text that every match of a regular expression must contain, so that lines
+ * can be ruled out with a plain substring search before the regular expression engine runs.
+ *
+ * <p>The analysis is deliberately conservative: any construct it does not fully understand, such
+ * as inline flags, top-level alternation or escapes that take arguments, yields no literal rather
+ * than a literal that could cause a match to be missed.
+ */
+final class PatternAnalyzer {
+
+    /** Escapes that stand for a class of characters or a boundary and take no arguments. */
+    private static final String SIMPLE_ESCAPES = "dDwWsSbBAzZGhHvVRXtnrfae";
+
+    private final String regexp;
+    private final StringBuilder run = new StringBuilder();
+    private String longest = "";
+    private boolean exact = true;
+    private int pos;
+
+    private PatternAnalyzer(String regexp) {
+        this.regexp = regexp;
+    }
+
+    /**
+     * Analyze a regular expression compiled without any flags. Every construct other than a literal
+     * character clears the exact flag, so an expression that is still exact after parsing consists
+     * of a single run of literal characters.
+     *
+     * @return The analyzer, or {@code null} if no literal could be determined.
+     */
+    static PatternAnalyzer analyze(String regexp) {
+        PatternAnalyzer analyzer = new PatternAnalyzer(regexp);
+        if (!analyzer.parse() || analyzer.longest.isEmpty()) {
+            return null;
+        }
+        return analyzer;
+    }
+
+    /** The longest literal that every match must contain. */
+    String getRequiredLiteral() {
+        return longest;
+    }
+
+    /** Whether the regular expression matches exactly its {@linkplain #getRequiredLiteral() literal}. */
+    boolean isExact() {
+        return exact;
+    }
+
+    private boolean parse() {
+        while (pos < regexp.length()) {
+            char c = regexp.charAt(pos);
+            switch (c) {
+                case '|':
+                    // Alternatives at the top level have no common literal that we can determine.
+                    return false;
+                case '(':
+                    if (!skipGroup()) {
+                        return false;
+                    }
+                    endRun();
+                    skipQuantifier();
+                    break;
+                case '[':
+                    skipClass();
+                    endRun();
+                    skipQuantifier();
+                    break;
+                case '.':
+                case '^':
+                case '$':
+                    pos++;
+                    exact = false;
+                    endRun();
+                    skipQuantifier();
+                    break;
+                case '{':
+                case '*':
+                case '+':
+                case '?':
+                    // A quantifier without an atom; the expression would not have compiled.
+                    return false;
+                case '\\':
+                    if (!parseEscape()) {
+                        return false;
+                    }
+                    break;
+                default:
+                    literal(nextCodePoint());
+                    break;
+            }
+        }
+        endRun();
+        return true;
+    }
+
+    private boolean parseEscape() {
+        if (pos + 1 >= regexp.length()) {
+            return false;
+        }
+        char next = regexp.charAt(pos + 1);
+        if (next == 'Q') {
+            int end = regexp.indexOf("\\E", pos + 2);
+            String quoted = end < 0 ? regexp.substring(pos + 2) : regexp.substring(pos + 2, end);
+            pos = end < 0 ? regexp.length() : end + 2;
+            if (!quoted.isEmpty()) {
+                literal(quoted);
+            }
+            return true;
+        }
+        if (Character.isLetterOrDigit(next)) {
+            if (SIMPLE_ESCAPES.indexOf(next) < 0) {
+                // Octal, hexadecimal, Unicode, control, property or back reference escapes.
+                return false;
+            }
+            pos += 2;
+            exact = false;
+            endRun();
+            skipQuantifier();
+            return true;
+        }
+        pos++;
+        literal(nextCodePoint());
+        return true;
+    }
+
+    /**
+     * Consume the character at the current position, along with its low surrogate if it is the
+     * high surrogate of a supplementary character, since a quantifier applies to the whole code
+     * point.
+     */
+    private String nextCodePoint() {
+        int codePoint = regexp.codePointAt(pos);
+        pos += Character.charCount(codePoint);
+        return new String(Character.toChars(codePoint));
+    }
+
+    /**
+     * Append a literal atom to the current run, taking into account any quantifier that follows.
+     * A quantifier only applies to the last code point of the atom.
+     */
+    private void literal(String atom) {
+        if (pos >= regexp.length() || "?*+{".indexOf(regexp.charAt(pos)) < 0) {
+            run.append(atom);
+            return;
+        }
+        exact = false;
+        char quantifier = regexp.charAt(pos);
+        if (quantifier == '+') {
+            // The last character occurs at least once, but may be repeated.
+            run.append(atom);
+        } else {
+            run.append(atom, 0, atom.offsetByCodePoints(atom.length(), -1));
+        }
+        endRun();
+        skipQuantifier();
+    }
+
+    private void endRun() {
+        if (run.length() > longest.length()) {
+            longest = run.toString();
+        }
+        run.setLength(0);
+    }
+
+    private void skipQuantifier() {
+        if (pos >= regexp.length()) {
+            return;
+        }
+        char c = regexp.charAt(pos);
+        if (c == '?' || c == '*' || c == '+') {
+            pos++;
+        } else if (c == '{') {
+            int end = regexp.indexOf('}', pos);
+            pos = end < 0 ? regexp.length() : end + 1;
+        } else {
+            return;
+        }
+        exact = false;
+        // Reluctant or possessive variants
+        if (pos < regexp.length() && (regexp.charAt(pos) == '?' || regexp.charAt(pos) == '+')) {
+            pos++;
+        }
+    }
+
+    /**
+     * Skip a group, including any nested groups and character classes.
+     *
+     * @return false if the group sets flags for the rest of the expression, such as {@code (?i)}.
+     */
+    private boolean skipGroup() {
+        exact = false;
+        if (regexp.startsWith("(?", pos)) {
+            int i = pos + 2;
+            while (i < regexp.length() && "idmsuxU-".indexOf(regexp.charAt(i)) >= 0) {
+                i++;
+            }
+            if (i > pos + 2 && i < regexp.length() && regexp.charAt(i) == ')') {
+                return false;
+            }
+        }
+        int depth = 0;
+        while (pos < regexp.length()) {
+            char c = regexp.charAt(pos);
+            if (c == '\\') {
+                skipEscape();
+                continue;
+            }
+            if (c == '[') {
+                skipClass();
+                continue;
+            }
+            pos++;
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /** Skip a character class, including any nested classes. */
+    private void skipClass() {
+        exact = false;
+        pos++;
+        if (pos < regexp.length() && regexp.charAt(pos) == '^') {
+            pos++;
+        }
+        if (pos < regexp.length() && regexp.charAt(pos) == ']') {
+            // A leading bracket is a literal.
+            pos++;
+        }
+        while (pos < regexp.length()) {
+            char c = regexp.charAt(pos);
+            if (c == '\\') {
+                skipEscape();
+            } else if (c == '[') {
+                skipClass();
+            } else {
+                pos++;
+                if (c == ']') {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void skipEscape() {
+        if (regexp.startsWith("\\Q", pos)) {
+            int end = regexp.indexOf("\\E", pos + 2);
+            pos = end < 0 ? regexp.length() : end + 2;
+        } else {
+            pos += 2;
+        }
+    }
+}
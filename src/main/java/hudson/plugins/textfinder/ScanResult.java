@@ -0,0 +1,140 @@
+package hudson.plugins.textfinder;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** The outcome of scanning one or more inputs for the patterns of a group of finders. */
+final class ScanResult implements Serializable {
+
+    /** The maximum number of matching lines of files reported for each pattern. */
+    static final int MAX_REPORTED_MATCHES = 100;
+
+    private final boolean[] found;
+    private final boolean[] timedOut;
+    private final int[] matches;
+
+    /** The first matching lines of files for each pattern, or {@code null} until there are any. */
+    private final List<List<FileMatch>> reported;
+
+    /** The number of matching lines of files beyond those reported for each pattern. */
+    private final int[] unreported;
+
+    ScanResult(int size) {
+        this.found = new boolean[size];
+        this.timedOut = new boolean[size];
+        this.matches = new int[size];
+        this.reported = new ArrayList<>(Collections.nCopies(size, null));
+        this.unreported = new int[size];
+    }
+
+    int size() {
+        return found.length;
+    }
+
+    boolean isFound(int i) {
+        return found[i];
+    }
+
+    void setFound(int i) {
+        found[i] = true;
+    }
+
+    /** Whether matching the pattern was abandoned because it exceeded its {@link MatchBudget}. */
+    boolean isTimedOut(int i) {
+        return timedOut[i];
+    }
+
+    void setTimedOut(int i) {
+        timedOut[i] = true;
+    }
+
+    boolean isAnyTimedOut() {
+        for (boolean t : timedOut) {
+            if (t) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The number of lines that matched the pattern, if they were counted. */
+    int getMatches(int i) {
+        return matches[i];
+    }
+
+    void addMatch(int i) {
+        matches[i]++;
+    }
+
+    void addMatches(int i, int count) {
+        matches[i] += count;
+    }
+
+    /** Report a line of a file that matched the pattern, unless enough have been reported already. */
+    void report(int i, FileMatch match) {
+        List<FileMatch> list = reported.get(i);
+        if (list == null) {
+            list = new ArrayList<>();
+            reported.set(i, list);
+        }
+        if (list.size() < MAX_REPORTED_MATCHES) {
+            list.add(match);
+        } else {
+            unreported[i]++;
+        }
+    }
+
+    /** The first lines of files that matched the pattern, in the order in which they were scanned. */
+    List<FileMatch> getReported(int i) {
+        List<FileMatch> list = reported.get(i);
+        return list != null ? Collections.unmodifiableList(list) : Collections.emptyList();
+    }
+
+    /** The number of lines of files that matched the pattern but were not reported. */
+    int getUnreported(int i) {
+        return unreported[i];
+    }
+
+    /** The approximate number of bytes of memory used by the reported matches, excluding the file names. */
+    long getReportedSize() {
+        long size = 0;
+        for (List<FileMatch> list : reported) {
+            if (list != null) {
+                for (FileMatch match : list) {
+                    size += 64L + 2L * match.getLine().length();
+                }
+            }
+        }
+        return size;
+    }
+
+    /** Whether the pattern has been decided, such that further input cannot change the result. */
+    boolean isDecided(int i) {
+        return found[i] || timedOut[i];
+    }
+
+    /** Combine the result of scanning another input for the same patterns into this one. */
+    void merge(ScanResult other) {
+        for (int i = 0; i < found.length; i++) {
+            merge(i, other, i);
+        }
+    }
+
+    /**
+     * Combine the result of scanning another input for a pattern into the result for the same
+     * pattern in this one, where it may have another index.
+     */
+    void merge(int i, ScanResult other, int j) {
+        found[i] |= other.found[j];
+        timedOut[i] |= other.timedOut[j];
+        matches[i] += other.matches[j];
+        for (FileMatch match : other.getReported(j)) {
+            report(i, match);
+        }
+        unreported[i] += other.unreported[j];
+    }
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,84 @@
+package hudson.plugins.textfinder;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.console.AnnotatedLargeText;
+import hudson.model.Run;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.LogAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+
+/**
+ * Reads the console output of a single stage or parallel branch of a Pipeline build through the
+ * Pipeline log storage, so that only the output of the steps inside it is read rather than the
+ * whole console log.
+ *
+ * <p>The Pipeline API plugin is an optional dependency, so this class must only be loaded once it is
+ * known to be installed.
+ */
+final class StageConsole {
+
+    private StageConsole() {}
+
+    /** Whether a build is a Pipeline build, which has stages. */
+    static boolean isPipeline(Run<?, ?> run) {
+        return run instanceof FlowExecutionOwner.Executable;
+    }
+
+    /**
+     * Get the console output of the steps inside the stages and parallel branches with the given
+     * name, in the order in which the steps started.
+     *
+     * @param completedOnly Whether to leave out the steps that are still running.
+     * @return The console output of each step, or {@code null} if there is no such stage.
+     */
+    @CheckForNull
+    static List<AnnotatedLargeText<? extends FlowNode>> getLogs(Run<?, ?> run, String stage, boolean completedOnly)
+            throws IOException {
+        FlowExecutionOwner owner = ((FlowExecutionOwner.Executable) run).asFlowExecutionOwner();
+        if (owner == null) {
+            return null;
+        }
+        FlowExecution execution = owner.get();
+        List<FlowNode> nodes = new DepthFirstScanner().allNodes(execution);
+
+        Set<String> stages = new HashSet<>();
+        for (FlowNode node : nodes) {
+            LabelAction label = node.getPersistentAction(LabelAction.class);
+            if (node instanceof BlockStartNode && label != null && stage.equals(label.getDisplayName())) {
+                stages.add(node.getId());
+            }
+        }
+        if (stages.isEmpty()) {
+            return null;
+        }
+
+        List<FlowNode> steps = new ArrayList<>();
+        for (FlowNode node : nodes) {
+            if (node.getPersistentAction(LogAction.class) != null
+                    && !(completedOnly && node.isActive())
+                    && !Collections.disjoint(node.getAllEnclosingIds(), stages)) {
+                steps.add(node);
+            }
+        }
+        // Node IDs are assigned in increasing numeric order.
+        steps.sort(Comparator.comparingInt((FlowNode node) -> node.getId().length())
+                .thenComparing(FlowNode::getId));
+
+        List<AnnotatedLargeText<? extends FlowNode>> logs = new ArrayList<>(steps.size());
+        for (FlowNode step : steps) {
+            logs.add(step.getPersistentAction(LogAction.class).getLogText());
+        }
+        return logs;
+    }
+}
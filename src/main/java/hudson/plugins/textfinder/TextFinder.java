@@ -29,12 +29,28 @@ public class TextFinder extends AbstractDescribableImpl<TextFinder> implements S
     @CheckForNull
     private String fileSet;
 
+    @CheckForNull
+    private String excludes;
+
+    private Boolean defaultExcludes = true;
+
     @NonNull
     private String buildResult = Result.FAILURE.toString();
 
     private TextFinderChangeCondition changeCondition = TextFinderChangeCondition.MATCH_FOUND;
     private boolean alsoCheckConsoleOutput;
 
+    @CheckForNull
+    private String consoleStage;
+
+    private long consoleTailBytes;
+    private int consoleTailLines;
+    private boolean consoleTailBackwards;
+    private boolean consoleAllMatches;
+
+    private TextFinderRegexEngine regexEngine = TextFinderRegexEngine.JAVA;
+    private TextFinderTimeoutPolicy timeoutPolicy = TextFinderTimeoutPolicy.UNSTABLE;
+
     @Restricted(NoExternalUse.class)
     public String getRegexp() {
         return regexp;
@@ -63,6 +79,33 @@ public class TextFinder extends AbstractDescribableImpl<TextFinder> implements S
         this.fileSet = fileSet != null ? Util.fixEmpty(fileSet.trim()) : null;
     }
 
+    /** The files in the file set that are not searched, or {@code null} to search every file in the file set. */
+    @Restricted(NoExternalUse.class)
+    public String getExcludes() {
+        return excludes;
+    }
+
+    @DataBoundSetter
+    @Restricted(NoExternalUse.class)
+    public void setExcludes(String excludes) {
+        this.excludes = excludes != null ? Util.fixEmpty(excludes.trim()) : null;
+    }
+
+    /**
+     * Whether the files that Ant excludes by default, such as those of version control systems, are
+     * excluded from the file set.
+     */
+    @Restricted(NoExternalUse.class)
+    public boolean isDefaultExcludes() {
+        return defaultExcludes;
+    }
+
+    @DataBoundSetter
+    @Restricted(NoExternalUse.class)
+    public void setDefaultExcludes(boolean defaultExcludes) {
+        this.defaultExcludes = defaultExcludes;
+    }
+
     @Restricted(NoExternalUse.class)
     public String getBuildResult() {
         return buildResult;
@@ -107,6 +150,97 @@ public class TextFinder extends AbstractDescribableImpl<TextFinder> implements S
         this.alsoCheckConsoleOutput = alsoCheckConsoleOutput;
     }
 
+    /**
+     * The name of the stage or parallel branch of a Pipeline build whose console output is searched,
+     * or {@code null} to search the console output of the whole build.
+     */
+    @Restricted(NoExternalUse.class)
+    public String getConsoleStage() {
+        return consoleStage;
+    }
+
+    @DataBoundSetter
+    @Restricted(NoExternalUse.class)
+    public void setConsoleStage(String consoleStage) {
+        this.consoleStage = consoleStage != null ? Util.fixEmpty(consoleStage.trim()) : null;
+    }
+
+    /** The size of the window at the end of the console output that is searched, or zero for no limit. */
+    @Restricted(NoExternalUse.class)
+    public long getConsoleTailBytes() {
+        return consoleTailBytes;
+    }
+
+    @DataBoundSetter
+    @Restricted(NoExternalUse.class)
+    public void setConsoleTailBytes(long consoleTailBytes) {
+        this.consoleTailBytes = Math.max(consoleTailBytes, 0L);
+    }
+
+    /** The number of lines at the end of the console output that are searched, or zero for no limit. */
+    @Restricted(NoExternalUse.class)
+    public int getConsoleTailLines() {
+        return consoleTailLines;
+    }
+
+    @DataBoundSetter
+    @Restricted(NoExternalUse.class)
+    public void setConsoleTailLines(int consoleTailLines) {
+        this.consoleTailLines = Math.max(consoleTailLines, 0);
+    }
+
+    /**
+     * Whether the windows before the one at the end of the console output are searched in turn,
+     * until a match is found.
+     */
+    @Restricted(NoExternalUse.class)
+    public boolean isConsoleTailBackwards() {
+        return consoleTailBackwards;
+    }
+
+    @DataBoundSetter
+    @Restricted(NoExternalUse.class)
+    public void setConsoleTailBackwards(boolean consoleTailBackwards) {
+        this.consoleTailBackwards = consoleTailBackwards;
+    }
+
+    /**
+     * Whether every matching line of the console output is logged and counted, rather than stopping
+     * at the first match.
+     */
+    @Restricted(NoExternalUse.class)
+    public boolean isConsoleAllMatches() {
+        return consoleAllMatches;
+    }
+
+    @DataBoundSetter
+    @Restricted(NoExternalUse.class)
+    public void setConsoleAllMatches(boolean consoleAllMatches) {
+        this.consoleAllMatches = consoleAllMatches;
+    }
+
+    @Restricted(NoExternalUse.class)
+    public TextFinderRegexEngine getRegexEngine() {
+        return regexEngine;
+    }
+
+    @DataBoundSetter
+    @Restricted(NoExternalUse.class)
+    public void setRegexEngine(TextFinderRegexEngine regexEngine) {
+        this.regexEngine = regexEngine != null ? regexEngine : TextFinderRegexEngine.JAVA;
+    }
+
+    @Restricted(NoExternalUse.class)
+    public TextFinderTimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    @DataBoundSetter
+    @Restricted(NoExternalUse.class)
+    public void setTimeoutPolicy(TextFinderTimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy != null ? timeoutPolicy : TextFinderTimeoutPolicy.UNSTABLE;
+    }
+
     /**
      * Called by XStream after object construction
      *
@@ -117,6 +251,18 @@ public class TextFinder extends AbstractDescribableImpl<TextFinder> implements S
             changeCondition = TextFinderChangeCondition.MATCH_FOUND;
         }
 
+        if (regexEngine == null) {
+            regexEngine = TextFinderRegexEngine.JAVA;
+        }
+
+        if (timeoutPolicy == null) {
+            timeoutPolicy = TextFinderTimeoutPolicy.UNSTABLE;
+        }
+
+        if (defaultExcludes == null) {
+            defaultExcludes = true;
+        }
+
         return this;
     }
 
@@ -130,18 +276,34 @@ public class TextFinder extends AbstractDescribableImpl<TextFinder> implements S
         }
 
         /**
-         * Checks the regular expression validity.
+         * Checks the regular expression validity with the engine that will evaluate it.
          *
          * @param value The expression to check
+         * @param regexEngine The name of the selected {@link TextFinderRegexEngine}
          * @return The form validation result
          */
         @SuppressWarnings({"lgtm[jenkins/csrf]", "lgtm[jenkins/no-permission-check]"})
-        public FormValidation doCheckRegexp(@QueryParameter String value) {
+        public FormValidation doCheckRegexp(@QueryParameter String value, @QueryParameter String regexEngine) {
             if (Util.fixEmptyAndTrim(value) == null) {
                 // not entered yet
                 return FormValidation.ok();
             }
 
+            if (TextFinderRegexEngine.RE2J.name().equals(regexEngine)) {
+                try {
+                    com.google.re2j.Pattern.compile(value);
+                    return FormValidation.ok();
+                } catch (com.google.re2j.PatternSyntaxException e) {
+                    // Expressions RE2/J does not support are evaluated by java.util.regex instead.
+                    try {
+                        Pattern.compile(value);
+                    } catch (PatternSyntaxException javaError) {
+                        return FormValidation.error(javaError.getMessage());
+                    }
+                    return FormValidation.warning(Messages.TextFinder_Re2jFallback(e.getMessage()));
+                }
+            }
+
             try {
                 Pattern.compile(value);
                 return FormValidation.ok();
@@ -1,5 +1,6 @@
 package hudson.plugins.textfinder;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
@@ -18,32 +19,44 @@ import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.PrintStream;
 import java.io.Reader;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.PatternSyntaxException;
 import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
-import org.apache.tools.ant.DirectoryScanner;
-import org.apache.tools.ant.Project;
-import org.apache.tools.ant.types.FileSet;
+import jenkins.util.SystemProperties;
 import org.jenkinsci.Symbol;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.framework.io.LargeText;
 
 /**
  * Text Finder plugin for Jenkins. Search in the workspace using a regular expression and determine
@@ -53,6 +66,121 @@ import org.kohsuke.stapler.DataBoundSetter;
  */
 public class TextFinderPublisher extends Recorder implements Serializable, SimpleBuildStep {
 
+    /**
+     * Files at least this many bytes long are memory-mapped and scanned in the byte domain rather
+     * than being decoded in full. Disabled when negative, since a mapped file cannot be deleted on
+     * Windows until the mapping is garbage collected.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static long MEMORY_MAPPED_SCAN_THRESHOLD =
+            SystemProperties.getLong(TextFinderPublisher.class.getName() + ".memoryMappedScanThreshold", -1L);
+
+    /**
+     * The number of files in a file set that are scanned concurrently on the agent. Output is still
+     * grouped by file and logged in file set order.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static int SCAN_PARALLELISM =
+            SystemProperties.getInteger(TextFinderPublisher.class.getName() + ".scanParallelism", 1);
+
+    /**
+     * The number of directories whose listings are cached on each agent between builds, so that
+     * walking a file set only lists the directories that changed, or zero to disable the cache.
+     *
+     * @see DirectoryIndex
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static int DIRECTORY_INDEX_CAPACITY =
+            SystemProperties.getInteger(TextFinderPublisher.class.getName() + ".directoryIndexCapacity", 0);
+
+    /**
+     * The number of bytes of output of earlier file scans that are cached on each agent, so that a
+     * file that has not changed since it was last scanned for the same patterns is not read again,
+     * or zero to disable the cache.
+     *
+     * @see FileResultCache
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static long FILE_RESULT_CACHE_BYTES =
+            SystemProperties.getLong(TextFinderPublisher.class.getName() + ".fileResultCacheBytes", 0L);
+
+    /**
+     * Scan files as if they only grow between builds, resuming at the end of the last complete line
+     * scanned by the previous build unless the file has been truncated or replaced since. The
+     * checkpoints are kept in the cache sized by {@link #FILE_RESULT_CACHE_BYTES}, so this has no
+     * effect unless the cache is enabled.
+     *
+     * @see FileCheckpoint
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static boolean INCREMENTAL_FILE_SCAN =
+            SystemProperties.getBoolean(TextFinderPublisher.class.getName() + ".incrementalFileScan");
+
+    /**
+     * The number of lines of output of the search of the file sets of a publisher, such as matching
+     * lines and the names of the files containing them, forwarded from the agent to the build log,
+     * or zero for no limit. Further lines are counted rather than logged.
+     *
+     * @see AgentOutput
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static int FILE_OUTPUT_MAX_LINES =
+            SystemProperties.getInteger(TextFinderPublisher.class.getName() + ".fileOutputMaxLines", 0);
+
+    /**
+     * The number of threads that search a large console log concurrently, each searching a range of
+     * at least {@link #CONSOLE_SCAN_MIN_RANGE_BYTES}. Output is still logged in the order of the
+     * console log.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static int CONSOLE_SCAN_PARALLELISM =
+            SystemProperties.getInteger(TextFinderPublisher.class.getName() + ".consoleScanParallelism", 1);
+
+    /**
+     * The minimum number of bytes of the console log searched by each thread, below which splitting
+     * the search does not pay off.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static long CONSOLE_SCAN_MIN_RANGE_BYTES = SystemProperties.getLong(
+            TextFinderPublisher.class.getName() + ".consoleScanMinRangeBytes", 8L * 1024 * 1024);
+
+    /**
+     * The time in milliseconds a pattern may spend matching a single line before it is abandoned,
+     * or zero for no limit.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static long LINE_MATCH_TIMEOUT_MILLIS =
+            SystemProperties.getLong(TextFinderPublisher.class.getName() + ".lineMatchTimeoutMillis", 0L);
+
+    /**
+     * The time in milliseconds the patterns of a scan of the console or of a file set may spend
+     * matching before they are abandoned, or zero for no limit.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static long SCAN_MATCH_TIMEOUT_MILLIS =
+            SystemProperties.getLong(TextFinderPublisher.class.getName() + ".scanMatchTimeoutMillis", 0L);
+
+    /**
+     * Search the console output of freestyle builds while it is being written, rather than reading
+     * the console log again once the build is complete.
+     *
+     * @see ConsoleScanFilter
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static boolean STREAMING_CONSOLE_SCAN =
+            SystemProperties.getBoolean(TextFinderPublisher.class.getName() + ".streamingConsoleScan");
+
     @NonNull
     private List<TextFinder> textFinders;
 
@@ -249,83 +377,327 @@ public class TextFinderPublisher extends Recorder implements Serializable, Simpl
             @NonNull Launcher launcher,
             @NonNull TaskListener listener)
             throws InterruptedException, IOException {
-        for (TextFinder textFinder : textFinders) {
-            findText(textFinder, run, workspace, listener);
+        PrintStream logger = listener.getLogger();
+        ScanResult results = new ScanResult(textFinders.size());
+        boolean[] aborted = new boolean[textFinders.size()];
+
+        /*
+         * The console output is only searched up to where it ends before this publisher logs
+         * anything. Lines logged while searching, such as the matching lines of an earlier finder,
+         * are then never searched, and do not shift the windows at the end of the console output.
+         */
+        ConsoleScanFilter.Scan streamed = null;
+        long consoleLength = -1L;
+        if (textFinders.stream().anyMatch(TextFinder::isAlsoCheckConsoleOutput)) {
+            streamed = ConsoleScanFilter.finish(run, this);
+            logger.flush();
+            consoleLength = run.getLogText().length();
+        }
+
+        // Compile each pattern once, so that any problems with it are only reported once.
+        CompiledPattern[] patterns = new CompiledPattern[textFinders.size()];
+        for (int i = 0; i < textFinders.size(); i++) {
+            TextFinder textFinder = textFinders.get(i);
+            if (FileSetScope.of(textFinder) != null || textFinder.isAlsoCheckConsoleOutput()) {
+                try {
+                    patterns[i] = compilePattern(logger, textFinder);
+                } catch (AbortException e) {
+                    aborted[i] = true;
+                }
+            }
+        }
+
+        /*
+         * Finders sharing a file set are evaluated together so that each file in the set is only
+         * read once, regardless of how many patterns are searched. All the file sets are searched
+         * in a single call to the agent, which runs while the console output is searched below.
+         */
+        Map<FileSetScope, List<Integer>> fileSets = new LinkedHashMap<>();
+        for (int i = 0; i < textFinders.size(); i++) {
+            FileSetScope scope = FileSetScope.of(textFinders.get(i));
+            if (!aborted[i] && scope != null) {
+                fileSets.computeIfAbsent(scope, k -> new ArrayList<>()).add(i);
+            }
+        }
+        FileSearch fileSearch = fileSets.isEmpty() ? null : new FileSearch(fileSets, run, workspace, logger);
+
+        /*
+         * All the finders that check the same part of the console output are evaluated together so
+         * that it is only read once, regardless of how many patterns are searched.
+         */
+        Map<ConsoleScope, List<Integer>> consoles = new LinkedHashMap<>();
+        for (int i = 0; i < textFinders.size(); i++) {
+            TextFinder textFinder = textFinders.get(i);
+            if (!aborted[i] && textFinder.isAlsoCheckConsoleOutput()) {
+                consoles.computeIfAbsent(ConsoleScope.of(textFinder), k -> new ArrayList<>()).add(i);
+            }
+        }
+        try {
+            for (Map.Entry<ConsoleScope, List<Integer>> entry : consoles.entrySet()) {
+                findTextInConsole(
+                        run,
+                        entry.getKey(),
+                        entry.getValue(),
+                        patterns,
+                        streamed,
+                        consoleLength,
+                        logger,
+                        results,
+                        aborted);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (fileSearch != null) {
+                fileSearch.cancel();
+            }
+            throw e;
+        }
+
+        if (fileSearch != null) {
+            fileSearch.join(logger, results, aborted);
+        }
+
+        for (int i = 0; i < textFinders.size(); i++) {
+            TextFinder textFinder = textFinders.get(i);
+            boolean foundText = results.isFound(i);
+            if (!foundText && results.isTimedOut(i)) {
+                switch (textFinder.getTimeoutPolicy()) {
+                    case MATCH_FOUND:
+                        foundText = true;
+                        break;
+                    case MATCH_NOT_FOUND:
+                        break;
+                    case UNSTABLE:
+                        aborted[i] = true;
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected value: " + textFinder.getTimeoutPolicy());
+                }
+            }
+            if (aborted[i]) {
+                // no test file found, or the search could not be completed
+                run.setResult(Result.UNSTABLE);
+            } else {
+                setResult(textFinder, foundText, run, logger);
+            }
         }
     }
 
     /** Indicates an orderly abortion of the processing. */
     private static final class AbortException extends RuntimeException {}
 
-    private static void findText(TextFinder textFinder, Run<?, ?> run, FilePath workspace, TaskListener listener)
-            throws IOException, InterruptedException {
-        try {
-            PrintStream logger = listener.getLogger();
-            boolean foundText = false;
-
-            if (textFinder.isAlsoCheckConsoleOutput()) {
-                // Do not mention the pattern we are looking for to avoid false positives
-                logger.println("[Text Finder] Searching console output...");
-                foundText = checkConsole(run, compilePattern(logger, textFinder.getRegexp()), logger);
-                logger.println("[Text Finder] Finished searching for pattern '"
-                        + textFinder.getRegexp()
-                        + "' in console output.");
-            }
-
-            if (textFinder.getFileSet() != null) {
-                logger.println("[Text Finder] Searching for pattern '"
-                        + textFinder.getRegexp()
-                        + "' in file set '"
-                        + textFinder.getFileSet()
-                        + "'...");
-                RemoteOutputStream ros = new RemoteOutputStream(logger);
-                foundText |= workspace.act(new FileChecker(ros, textFinder.getFileSet(), textFinder.getRegexp()));
-                logger.println("[Text Finder] Finished searching for pattern '"
-                        + textFinder.getRegexp()
-                        + "' in file set '"
-                        + textFinder.getFileSet()
-                        + "'.");
-            }
-
-            Result result = Result.SUCCESS;
-            switch (textFinder.getChangeCondition()) {
-                case MATCH_FOUND:
-                    if (foundText) {
-                        result = Result.fromString(textFinder.getBuildResult());
+    /**
+     * Search the console output for the patterns of all the given finders in a single pass.
+     *
+     * @param scope The part of the console output that is searched.
+     * @param indices The indices of the finders in {@link #textFinders} that check this console output.
+     * @param compiled The compiled pattern of each finder in {@link #textFinders}.
+     * @param streamed The search of the console output while it was written, if any.
+     * @param consoleLength The length of the console output before this publisher logged anything.
+     */
+    private void findTextInConsole(
+            Run<?, ?> run,
+            ConsoleScope scope,
+            List<Integer> indices,
+            CompiledPattern[] compiled,
+            @CheckForNull ConsoleScanFilter.Scan streamed,
+            long consoleLength,
+            PrintStream logger,
+            ScanResult results,
+            boolean[] aborted)
+            throws IOException {
+        // Do not mention the patterns we are looking for to avoid false positives
+        String console = scope.toString();
+        logger.println("[Text Finder] Searching " + console + "...");
+
+        if (scope.isStreamable() && streamed != null && streamed.getIndices().equals(indices)) {
+            streamed.writeOutputTo(logger);
+            for (int i : indices) {
+                long line = streamed.getLine(i);
+                if (line > 0) {
+                    logger.println("[Text Finder] Pattern '"
+                            + textFinders.get(i).getRegexp()
+                            + "' first found in "
+                            + console
+                            + " at line "
+                            + line
+                            + ", offset "
+                            + streamed.getOffset(i)
+                            + ".");
+                }
+            }
+            collectConsoleResults(indices, streamed.getResult(), console, false, logger, results);
+            return;
+        }
+
+        CompiledPattern[] patterns = new CompiledPattern[indices.size()];
+        for (int j = 0; j < patterns.length; j++) {
+            patterns[j] = compiled[indices.get(j)];
+        }
+
+        String stage = scope.getStage();
+        ScanResult result;
+        if (stage == null) {
+            result = checkConsole(run, scope, consoleLength, patterns, logger);
+        } else {
+            List<? extends LargeText> logs = null;
+            if (Jenkins.get().getPlugin("workflow-api") != null && StageConsole.isPipeline(run)) {
+                // The steps still running, including this one, are still writing to their logs.
+                logs = StageConsole.getLogs(run, stage, scope.isAllMatches());
+            }
+            if (logs == null) {
+                logger.println("[Text Finder] Stage '" + stage + "' not found");
+                for (int i : indices) {
+                    aborted[i] = true;
+                }
+                return;
+            }
+            result = checkConsole(logs, scope.isAllMatches(), patterns, logger);
+        }
+        boolean counted = scope.isAllMatches() && (stage != null || MappedFileScanner.isSupported(run.getCharset()));
+        collectConsoleResults(indices, result, console, counted, logger, results);
+    }
+
+    /** @param counted Whether the matching lines were counted. */
+    private void collectConsoleResults(
+            List<Integer> indices,
+            ScanResult result,
+            String console,
+            boolean counted,
+            PrintStream logger,
+            ScanResult results) {
+        for (int j = 0; j < indices.size(); j++) {
+            int i = indices.get(j);
+            if (counted) {
+                logger.println("[Text Finder] Found "
+                        + result.getMatches(j)
+                        + " matching lines for pattern '"
+                        + textFinders.get(i).getRegexp()
+                        + "' in "
+                        + console
+                        + ".");
+            }
+            if (result.isFound(j)) {
+                results.setFound(i);
+            }
+            if (result.isTimedOut(j)) {
+                results.setTimedOut(i);
+            }
+            logger.println("[Text Finder] Finished searching for pattern '"
+                    + textFinders.get(i).getRegexp()
+                    + "' in "
+                    + console
+                    + ".");
+        }
+    }
+
+    /**
+     * A search of the file sets of the given finders on the agent, each in a single pass, that runs
+     * while the controller searches the console output. The output of the agent is held back until
+     * the search is joined, since the console search reads the build log: interleaving the output
+     * would garble it, and the file names and lines logged by the agent could match the patterns
+     * searched in the console output.
+     */
+    private final class FileSearch {
+
+        /** The indices of the finders in {@link #textFinders} that share each file set. */
+        private final Map<FileSetScope, List<Integer>> fileSets;
+
+        private final AgentOutput.Receiver output;
+        private final Future<FileSetResults> future;
+
+        FileSearch(Map<FileSetScope, List<Integer>> fileSets, Run<?, ?> run, FilePath workspace, PrintStream logger)
+                throws IOException, InterruptedException {
+            this.fileSets = fileSets;
+            this.output = AgentOutput.receiver(logger, run.getRootDir());
+            this.future = workspace.actAsync(new FileChecker(new RemoteOutputStream(output), fileSets, textFinders));
+        }
+
+        /** Stop the search on the agent, discarding its output. */
+        void cancel() {
+            future.cancel(true);
+            output.discard();
+        }
+
+        /** Log the output of the search, wait for it to complete, and record its results. */
+        void join(PrintStream logger, ScanResult results, boolean[] aborted) throws IOException, InterruptedException {
+            FileSetResults found;
+            try {
+                output.release();
+                found = future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof InterruptedException) {
+                    throw (InterruptedException) e.getCause();
+                }
+                throw new IOException("Failed to search file sets", e.getCause());
+            } catch (InterruptedException e) {
+                cancel();
+                throw e;
+            } finally {
+                output.finish();
+            }
+
+            for (Map.Entry<FileSetScope, List<Integer>> entry : fileSets.entrySet()) {
+                for (int i : entry.getValue()) {
+                    if (found.isEmpty(i)) {
+                        aborted[i] = true;
                     }
-                    break;
-                case MATCH_NOT_FOUND:
-                    if (!foundText) {
-                        result = Result.fromString(textFinder.getBuildResult());
+                    if (found.isFound(i)) {
+                        results.setFound(i);
                     }
-                    break;
-                default:
-                    throw new IllegalStateException("Unexpected value: " + textFinder.getChangeCondition());
+                    if (found.isTimedOut(i)) {
+                        results.setTimedOut(i);
+                    }
+                    List<FileMatch> reported = found.getReported(i);
+                    if (!reported.isEmpty()) {
+                        logger.println("[Text Finder] Found "
+                                + (reported.size() + found.getUnreported(i))
+                                + " matching lines for pattern '"
+                                + textFinders.get(i).getRegexp()
+                                + "' in "
+                                + entry.getKey()
+                                + ", first at "
+                                + reported.get(0)
+                                + ".");
+                    }
+                }
             }
+        }
+    }
 
-            if (!result.equals(Result.SUCCESS)) {
-                logger.println("[Text Finder] Setting build result to '" + result + "'.");
-                run.setResult(result);
-            }
-        } catch (AbortException e) {
-            // no test file found
-            run.setResult(Result.UNSTABLE);
+    private static void setResult(TextFinder textFinder, boolean foundText, Run<?, ?> run, PrintStream logger) {
+        Result result = Result.SUCCESS;
+        switch (textFinder.getChangeCondition()) {
+            case MATCH_FOUND:
+                if (foundText) {
+                    result = Result.fromString(textFinder.getBuildResult());
+                }
+                break;
+            case MATCH_NOT_FOUND:
+                if (!foundText) {
+                    result = Result.fromString(textFinder.getBuildResult());
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected value: " + textFinder.getChangeCondition());
+        }
+
+        if (!result.equals(Result.SUCCESS)) {
+            logger.println("[Text Finder] Setting build result to '" + result + "'.");
+            run.setResult(result);
         }
     }
 
     /**
-     * Search the given regexp pattern.
+     * Search the given regexp patterns, reading the input only once. Each line that matches any of
+     * the patterns is logged once.
      *
-     * @param isConsoleLog True if the reader represents a console log (as opposed to a file).
+     * @param matcher The matcher for the patterns and the input the reader represents.
      */
-    private static boolean checkPattern(
-            Reader r, Pattern pattern, PrintStream logger, String header, boolean isConsoleLog) throws IOException {
-        boolean logFilename = true;
-        boolean foundText = false;
+    private static void checkPatterns(Reader r, LineMatcher matcher, boolean isConsoleLog) throws IOException {
         try (BufferedReader reader = new BufferedReader(r)) {
             // Assume default encoding and text files
             String line;
-            while ((line = reader.readLine()) != null) {
+            while (!matcher.isDone() && (line = reader.readLine()) != null) {
                 /*
                  * Strip console logs of their console notes before searching; otherwise, we might
                  * accidentally match the search string in the encoded console note.
@@ -333,58 +705,166 @@ public class TextFinderPublisher extends Recorder implements Serializable, Simpl
                 if (isConsoleLog) {
                     line = ConsoleNote.removeNotes(line);
                 }
-                Matcher matcher = pattern.matcher(line);
-                if (matcher.find()) {
-                    if (logFilename) { // first occurrence
-                        if (header != null) {
-                            logger.println(header);
-                        }
-                        logFilename = false;
-                    }
-                    logger.println(line);
-                    foundText = true;
-                    /*
-                     * When searching console output, return immediately as soon as the first hit is
-                     * found; otherwise, we'll loop forever.
-                     */
-                    if (isConsoleLog) {
-                        return true;
-                    }
-                }
+                matcher.startLine(-1L);
+                matcher.match(line);
+            }
+        }
+    }
+
+    /** Search the lines of a file read in the byte domain, keeping track of their offsets. */
+    private static void checkLines(ConsoleLineReader reader, LineMatcher matcher) throws IOException {
+        while (true) {
+            long offset = reader.getOffset();
+            String line = reader.readLine();
+            if (line == null) {
+                return;
             }
+            matcher.startLine(offset);
+            matcher.match(line);
         }
-        return foundText;
     }
 
-    private static boolean checkConsole(Run<?, ?> build, Pattern pattern, PrintStream logger) {
-        try (Reader r = build.getLogReader()) {
-            return checkPattern(r, pattern, logger, null, true);
+    /**
+     * Search the console output for the given patterns. Unless every match is listed, stop as soon
+     * as every pattern has been found or abandoned.
+     *
+     * @param scope The part of the console output to search; the whole console output is searched
+     *     for the first match if it is not in a charset supported by {@link BoundedConsoleScanner}.
+     * @param length The length of the console output up to which it is searched, in a supported
+     *     charset.
+     */
+    private static ScanResult checkConsole(
+            Run<?, ?> build, ConsoleScope scope, long length, CompiledPattern[] patterns, PrintStream logger) {
+        ScanResult result = new ScanResult(patterns.length);
+        if (patterns.length == 0) {
+            return result;
+        }
+        Charset charset = build.getCharset();
+        boolean bounded = MappedFileScanner.isSupported(charset);
+        if (scope.isAllMatches() && !bounded) {
+            logger.println("[Text Finder] Unable to list every match in console output encoded in "
+                    + charset
+                    + " -- stopping at the first match");
+        }
+        if (scope.isTail() && !bounded) {
+            logger.println("[Text Finder] Unable to search only the end of console output encoded in "
+                    + charset
+                    + " -- searching all of it");
+        }
+        LineMatcher matcher = new LineMatcher(
+                patterns, result, newMatchBudget().start(), logger, null, scope.isAllMatches() && bounded);
+        try {
+            if (bounded) {
+                new BoundedConsoleScanner(
+                                build, charset, scope, CONSOLE_SCAN_PARALLELISM, CONSOLE_SCAN_MIN_RANGE_BYTES)
+                        .scan(matcher, length);
+            } else {
+                try (Reader r = build.getLogReader()) {
+                    checkPatterns(r, matcher, true);
+                }
+            }
         } catch (IOException e) {
             logger.println("[Text Finder] Error reading console output -- ignoring");
             Functions.printStackTrace(e, logger);
         }
 
-        return false;
+        return result;
+    }
+
+    /**
+     * Search the console output of the steps of a stage for the given patterns. Unless every match
+     * is listed, stop as soon as every pattern has been found or abandoned.
+     */
+    private static ScanResult checkConsole(
+            List<? extends LargeText> logs, boolean allMatches, CompiledPattern[] patterns, PrintStream logger) {
+        ScanResult result = new ScanResult(patterns.length);
+        LineMatcher matcher = new LineMatcher(patterns, result, newMatchBudget().start(), logger, null, allMatches);
+        try {
+            for (LargeText log : logs) {
+                if (matcher.isDone()) {
+                    break;
+                }
+                checkPatterns(log.readAll(), matcher, true);
+            }
+        } catch (IOException e) {
+            logger.println("[Text Finder] Error reading console output -- ignoring");
+            Functions.printStackTrace(e, logger);
+        }
+        return result;
     }
 
-    private static boolean checkFile(File f, Pattern pattern, PrintStream logger, Charset charset) {
-        try (InputStream is = new FileInputStream(f);
-                Reader r = new InputStreamReader(is, charset)) {
-            return checkPattern(r, pattern, logger, f + ":", false);
+    /**
+     * @return Whether the file was read in full.
+     * @throws InterruptedIOException If the thread was interrupted while the file was read.
+     */
+    private static boolean checkFile(
+            File f,
+            CompiledPattern[] patterns,
+            ScanResult result,
+            MatchBudget budget,
+            PrintStream logger,
+            Charset charset,
+            long mappedThreshold)
+            throws InterruptedIOException {
+        if (!f.exists()) {
+            logger.println("[Text Finder] Unable to find file '" + f + "'");
+            return false;
+        }
+
+        if (!f.canRead()) {
+            logger.println("[Text Finder] Unable to read from file '" + f + "'");
+            return false;
+        }
+
+        LineMatcher matcher = new LineMatcher(patterns, result, budget, logger, f);
+        try {
+            boolean supported = MappedFileScanner.isSupported(charset);
+            if (mappedThreshold >= 0 && f.length() >= mappedThreshold && supported) {
+                new MappedFileScanner(matcher, charset).scan(f);
+                return true;
+            }
+            if (supported) {
+                try (ConsoleLineReader reader = ConsoleLineReader.forFile(new FileInputStream(f), charset, 0L)) {
+                    checkLines(reader, matcher);
+                }
+                return true;
+            }
+            try (InputStream is = new FileInputStream(f);
+                    Reader r = new InputStreamReader(is, charset)) {
+                checkPatterns(r, matcher, false);
+            }
+            return true;
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (ClosedByInterruptException e) {
+            throw interruptedReading(f, e);
         } catch (IOException e) {
             logger.println("[Text Finder] Error reading file '" + f + "' -- ignoring");
             Functions.printStackTrace(e, logger);
+            return false;
         }
+    }
+
+    /**
+     * A channel is closed if the thread reading it is interrupted, which is not an error reading
+     * the file but the build being aborted.
+     */
+    private static InterruptedIOException interruptedReading(File f, ClosedByInterruptException e) {
+        InterruptedIOException interrupted = new InterruptedIOException("Interrupted while reading file '" + f + "'");
+        interrupted.initCause(e);
+        return interrupted;
+    }
 
-        return false;
+    private static MatchBudget newMatchBudget() {
+        return new MatchBudget(LINE_MATCH_TIMEOUT_MILLIS, SCAN_MATCH_TIMEOUT_MILLIS);
     }
 
-    private static Pattern compilePattern(PrintStream logger, String regexp) {
-        Pattern pattern;
+    private static CompiledPattern compilePattern(PrintStream logger, TextFinder textFinder) {
+        CompiledPattern pattern;
         try {
-            pattern = Pattern.compile(regexp);
+            pattern = CompiledPattern.compile(textFinder.getRegexp(), textFinder.getRegexEngine(), logger);
         } catch (PatternSyntaxException e) {
-            logger.println("[Text Finder] Unable to compile regular expression '" + regexp + "'");
+            logger.println("[Text Finder] Unable to compile regular expression '" + textFinder.getRegexp() + "'");
             throw new AbortException();
         }
         return pattern;
@@ -410,59 +890,366 @@ public class TextFinderPublisher extends Recorder implements Serializable, Simpl
         }
     }
 
-    private static class FileChecker extends MasterToSlaveFileCallable<Boolean> {
+    /**
+     * Searches the file sets of all the finders of a publisher, so that the agent is only called
+     * once regardless of how many file sets there are.
+     */
+    private static class FileChecker extends MasterToSlaveFileCallable<FileSetResults> {
+
+        /** The number of files per thread that may be found before the earliest has been scanned. */
+        private static final int PENDING_FILES_PER_THREAD = 4;
 
         private final RemoteOutputStream ros;
-        private final String fileSet;
-        private final String regexp;
 
-        public FileChecker(RemoteOutputStream ros, String fileSet, String regexp) {
+        /** The indices of the finders that share each file set. */
+        private final Map<FileSetScope, List<Integer>> fileSets;
+
+        private final List<TextFinder> textFinders;
+        private final long mappedThreshold = MEMORY_MAPPED_SCAN_THRESHOLD;
+        private final int parallelism = SCAN_PARALLELISM;
+        private final int indexCapacity = DIRECTORY_INDEX_CAPACITY;
+        private final long resultCacheCapacity = FILE_RESULT_CACHE_BYTES;
+        private final boolean incremental = INCREMENTAL_FILE_SCAN;
+        private final int maxOutputLines = FILE_OUTPUT_MAX_LINES;
+        private final MatchBudget budget = newMatchBudget();
+
+        /** The outcomes of earlier scans, if enabled. */
+        @CheckForNull
+        private transient FileResultCache resultCache;
+
+        /** Identifies the patterns and the charset of the file set being searched in {@link #resultCache}. */
+        private transient String resultCacheKey;
+
+        public FileChecker(
+                RemoteOutputStream ros, Map<FileSetScope, List<Integer>> fileSets, List<TextFinder> textFinders) {
             this.ros = ros;
-            this.fileSet = fileSet;
-            this.regexp = regexp;
+            this.fileSets = new LinkedHashMap<>(fileSets);
+            this.textFinders = new ArrayList<>(textFinders);
         }
 
         @Override
-        public Boolean invoke(File ws, VirtualChannel channel) throws IOException {
-            PrintStream logger =
-                    new PrintStream(ros, true, Charset.defaultCharset().toString());
-
-            // Collect list of files for searching
-            FileSet fs = new FileSet();
-            Project p = new Project();
-            fs.setProject(p);
-            fs.setDir(ws);
-            fs.setIncludes(fileSet);
-            DirectoryScanner ds = fs.getDirectoryScanner(p);
+        public FileSetResults invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
+            AgentOutput output = AgentOutput.of(ros, maxOutputLines);
+            PrintStream logger = new PrintStream(output, false, Charset.defaultCharset().toString());
+            try {
+                FileSetResults results = new FileSetResults(textFinders.size());
+                for (Map.Entry<FileSetScope, List<Integer>> entry : fileSets.entrySet()) {
+                    FileSetScope fileSet = entry.getKey();
+                    List<Integer> indices = entry.getValue();
+                    for (int i : indices) {
+                        output.message(
+                                logger,
+                                "[Text Finder] Searching for pattern '"
+                                        + textFinders.get(i).getRegexp()
+                                        + "' in "
+                                        + fileSet
+                                        + "...");
+                    }
+                    try {
+                        results.add(indices, check(ws, fileSet, indices, output, logger));
+                    } catch (AbortException e) {
+                        results.setEmpty(indices);
+                        continue;
+                    }
+                    logger.flush();
+                    int suppressed = output.takeSuppressed();
+                    if (suppressed > 0) {
+                        output.message(
+                                logger,
+                                "[Text Finder] Suppressed "
+                                        + suppressed
+                                        + " lines of output from "
+                                        + fileSet
+                                        + " beyond the limit of "
+                                        + maxOutputLines
+                                        + " lines");
+                    }
+                    for (int i : indices) {
+                        output.message(
+                                logger,
+                                "[Text Finder] Finished searching for pattern '"
+                                        + textFinders.get(i).getRegexp()
+                                        + "' in "
+                                        + fileSet
+                                        + ".");
+                    }
+                    // Send the output of each file set as soon as it is complete.
+                    logger.flush();
+                }
+                return results;
+            } finally {
+                logger.flush();
+                output.finish();
+            }
+        }
+
+        /**
+         * Search a file set for the patterns of all the given finders in a single pass.
+         *
+         * @param indices The indices of the finders that share this file set.
+         * @param logger The stream that writes to {@code output}.
+         */
+        private ScanResult check(
+                File ws, FileSetScope fileSet, List<Integer> indices, AgentOutput output, PrintStream logger)
+                throws IOException, InterruptedException {
+            List<TextFinder> group = new ArrayList<>();
+            for (int i : indices) {
+                group.add(textFinders.get(i));
+            }
+            // The patterns were already compiled on the controller, which reported any problems.
+            CompiledPattern[] patterns = new CompiledPattern[group.size()];
+            for (int j = 0; j < patterns.length; j++) {
+                TextFinder textFinder = group.get(j);
+                patterns[j] = CompiledPattern.compile(textFinder.getRegexp(), textFinder.getRegexEngine(), null);
+            }
+
+            ScanResult result = new ScanResult(patterns.length);
+            MatchBudget budget = this.budget.start();
+            Charset charset = Charset.defaultCharset();
+            FileSetWalker walker =
+                    new FileSetWalker(fileSet, indexCapacity > 0 ? DirectoryIndex.shared(indexCapacity) : null);
+            if (resultCacheCapacity > 0) {
+                resultCache = FileResultCache.shared(resultCacheCapacity);
+                StringBuilder key = new StringBuilder(charset.name());
+                for (TextFinder textFinder : group) {
+                    key.append('\n').append(textFinder.getRegexEngine()).append(':').append(textFinder.getRegexp());
+                }
+                resultCacheKey = key.toString();
+            }
+
+            int files;
+            try {
+                if (parallelism <= 1) {
+                    files = walker.walk(
+                            ws, file -> checkFile(new File(ws, file), patterns, result, budget, logger, charset));
+                } else {
+                    files = checkFilesInParallel(ws, walker, patterns, result, budget, logger, charset);
+                }
+            } catch (InterruptedIOException e) {
+                // The scan of a file noticed that the build was aborted.
+                Thread.interrupted();
+                InterruptedException interrupted = new InterruptedException(e.getMessage());
+                interrupted.initCause(e);
+                throw interrupted;
+            }
 
             // Any files in the final set?
-            String[] files = ds.getIncludedFiles();
-            if (files.length == 0) {
-                logger.println("[Text Finder] File set '" + fileSet + "' is empty");
+            if (files == 0) {
+                output.message(logger, "[Text Finder] File set '" + fileSet.getIncludes() + "' is empty");
                 throw new AbortException();
             }
 
-            Pattern pattern = compilePattern(logger, regexp);
+            return result;
+        }
 
-            boolean foundText = false;
+        /**
+         * Scan a file, or replay the outcome of an earlier scan of the same contents for the same
+         * patterns if the result cache is enabled.
+         */
+        private void checkFile(
+                File f,
+                CompiledPattern[] patterns,
+                ScanResult result,
+                MatchBudget budget,
+                PrintStream logger,
+                Charset charset)
+                throws IOException {
+            BasicFileAttributes attrs = resultCache != null ? FileResultCache.attributes(f) : null;
+            if (attrs == null) {
+                TextFinderPublisher.checkFile(f, patterns, result, budget, logger, charset, mappedThreshold);
+                return;
+            }
 
-            for (String file : files) {
-                File f = new File(ws, file);
+            FileResultCache.Key key = FileResultCache.key(f, resultCacheKey);
+            FileResultCache.Outcome outcome = resultCache.get(key);
+            if (outcome != null && outcome.isUnchanged(attrs)) {
+                logger.write(outcome.getOutput(), 0, outcome.getOutput().length);
+                result.merge(outcome.getResult());
+                return;
+            }
 
-                if (!f.exists()) {
-                    logger.println("[Text Finder] Unable to find file '" + f + "'");
-                    continue;
+            // Outcomes that depend on time or on errors are not cached.
+            ScanResult fileResult = new ScanResult(patterns.length);
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            PrintStream fileLogger = new PrintStream(buf, false, charset.name());
+            if (incremental && f.canRead() && MappedFileScanner.isSupported(charset)) {
+                checkFileIncrementally(f, key, outcome, patterns, fileResult, budget, fileLogger, buf, charset);
+            } else {
+                boolean complete = TextFinderPublisher.checkFile(
+                        f, patterns, fileResult, budget, fileLogger, charset, mappedThreshold);
+                fileLogger.flush();
+                if (complete && !fileResult.isAnyTimedOut() && !FileResultCache.isRacy(attrs)) {
+                    resultCache.put(key, FileResultCache.Outcome.of(fileResult, buf.toByteArray(), attrs));
                 }
+            }
+            fileLogger.flush();
+            buf.writeTo(logger);
+            result.merge(fileResult);
+        }
 
-                if (!f.canRead()) {
-                    logger.println("[Text Finder] Unable to read from file '" + f + "'");
-                    continue;
+        /**
+         * Scan a file that only grows between builds, resuming at the checkpoint of the previous
+         * scan if the file has not been truncated or replaced since. The new checkpoint is at the
+         * end of the last complete line, so that a line still being written is scanned again by
+         * the next build.
+         *
+         * @param logger Logs to {@code buf}, which holds the output of the part before the checkpoint.
+         */
+        private void checkFileIncrementally(
+                File f,
+                FileResultCache.Key key,
+                @CheckForNull FileResultCache.Outcome previous,
+                CompiledPattern[] patterns,
+                ScanResult result,
+                MatchBudget budget,
+                PrintStream logger,
+                ByteArrayOutputStream buf,
+                Charset charset)
+                throws InterruptedIOException {
+            try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                long from = 0L;
+                FileCheckpoint checkpoint = previous != null ? previous.getCheckpoint() : null;
+                if (checkpoint != null && checkpoint.matches(channel, size)) {
+                    logger.write(previous.getOutput(), 0, previous.getOutput().length);
+                    result.merge(previous.getResult());
+                    from = checkpoint.getOffset();
+                }
+                LineMatcher matcher = new LineMatcher(patterns, result, budget, logger, f);
+                if (from > 0) {
+                    matcher.resume(checkpoint.getLines(), previous.getOutput().length > 0);
                 }
 
-                foundText |= checkFile(f, pattern, logger, Charset.defaultCharset());
+                long boundary = FileCheckpoint.lineBoundary(channel, from, size);
+                scanFile(channel, from, boundary, matcher, charset);
+                if (boundary > from && !result.isAnyTimedOut()) {
+                    logger.flush();
+                    ScanResult scanned = new ScanResult(patterns.length);
+                    scanned.merge(result);
+                    FileCheckpoint next = FileCheckpoint.of(channel, boundary, matcher.getLines());
+                    resultCache.put(key, FileResultCache.Outcome.of(scanned, buf.toByteArray(), next));
+                }
+                scanFile(channel, boundary, size, matcher, charset);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (ClosedByInterruptException e) {
+                throw interruptedReading(f, e);
+            } catch (IOException e) {
+                logger.println("[Text Finder] Error reading file '" + f + "' -- ignoring");
+                Functions.printStackTrace(e, logger);
             }
+        }
 
-            return foundText;
+        /** Search part of a file that starts at the start of a line and ends at the end of one. */
+        private void scanFile(FileChannel channel, long from, long to, LineMatcher matcher, Charset charset)
+                throws IOException {
+            if (mappedThreshold >= 0 && to - from >= mappedThreshold) {
+                new MappedFileScanner(matcher, charset).scan(channel, from, to);
+                return;
+            }
+            try (ConsoleLineReader reader =
+                    ConsoleLineReader.forFile(new RangeInputStream(channel, from, to), charset, from)) {
+                checkLines(reader, matcher);
+            }
+        }
+
+        /**
+         * Scan each file into its own buffer as soon as it is found, while the walk continues. The
+         * buffers are copied to the log in file set order, so the output is the same as a
+         * sequential scan. The walk waits for the earliest file once too many are pending, which
+         * bounds the memory held by paths and buffers.
+         *
+         * @return The number of files found.
+         */
+        private int checkFilesInParallel(
+                File ws,
+                FileSetWalker walker,
+                CompiledPattern[] patterns,
+                ScanResult result,
+                MatchBudget budget,
+                PrintStream logger,
+                Charset charset)
+                throws IOException, InterruptedException {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                Deque<PendingFile> pending = new ArrayDeque<>();
+                int files = walker.walk(ws, file -> {
+                    ScanResult fileResult = new ScanResult(patterns.length);
+                    Future<ByteArrayOutputStream> output = pool.submit(() -> {
+                        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                        PrintStream fileLogger = new PrintStream(buf, false, charset.name());
+                        checkFile(new File(ws, file), patterns, fileResult, budget, fileLogger, charset);
+                        fileLogger.flush();
+                        return buf;
+                    });
+                    pending.add(new PendingFile(new File(ws, file), fileResult, output));
+                    if (pending.size() >= PENDING_FILES_PER_THREAD * parallelism) {
+                        pending.remove().complete(result, logger);
+                    }
+                });
+                while (!pending.isEmpty()) {
+                    pending.remove().complete(result, logger);
+                }
+                return files;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /** A file being scanned in parallel with others, whose output has not been logged yet. */
+    private static final class PendingFile {
+
+        private final File file;
+        private final ScanResult result;
+        private final Future<ByteArrayOutputStream> output;
+
+        PendingFile(File file, ScanResult result, Future<ByteArrayOutputStream> output) {
+            this.file = file;
+            this.result = result;
+            this.output = output;
+        }
+
+        /** Wait for the scan to complete, then log its output and merge its result. */
+        void complete(ScanResult merged, PrintStream logger) throws IOException, InterruptedException {
+            try {
+                output.get().writeTo(logger);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to scan " + file, e.getCause());
+            }
+            merged.merge(result);
+        }
+    }
+
+    /** Reads part of a file, leaving the file open once closed. */
+    private static final class RangeInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeInputStream(FileChannel channel, long from, long to) {
+            this.channel = channel;
+            this.position = from;
+            this.end = to;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
         }
     }
 
@@ -0,0 +1,24 @@
+package hudson.plugins.textfinder;
+
+import hudson.util.EnumConverter;
+import org.kohsuke.stapler.Stapler;
+
+public enum TextFinderRegexEngine {
+    JAVA("Java (java.util.regex)"),
+    RE2J("Linear time (RE2/J), falling back to Java for unsupported constructs");
+
+    private final String description;
+
+    TextFinderRegexEngine(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    static {
+        // Allow conversion from a string to an enumeration in the databinding process.
+        Stapler.CONVERT_UTILS.register(new EnumConverter(), TextFinderRegexEngine.class);
+    }
+}
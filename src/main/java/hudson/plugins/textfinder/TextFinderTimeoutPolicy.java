@@ -0,0 +1,25 @@
+package hudson.plugins.textfinder;
+
+import hudson.util.EnumConverter;
+import org.kohsuke.stapler.Stapler;
+
+public enum TextFinderTimeoutPolicy {
+    MATCH_FOUND("Treat the search as if a match was found"),
+    MATCH_NOT_FOUND("Treat the search as if a match was not found"),
+    UNSTABLE("Set the build result to UNSTABLE");
+
+    private final String description;
+
+    TextFinderTimeoutPolicy(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    static {
+        // Allow conversion from a string to an enumeration in the databinding process.
+        Stapler.CONVERT_UTILS.register(new EnumConverter(), TextFinderTimeoutPolicy.class);
+    }
+}
@@ -0,0 +1,116 @@
+package hudson.plugins.textfinder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AgentOutputTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void outputHeldUntilReleased() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        AgentOutput.Receiver receiver = AgentOutput.receiver(log, dir.toFile());
+        AgentOutput output = AgentOutput.of(receiver, 0);
+        PrintStream agent = new PrintStream(output, false, StandardCharsets.UTF_8);
+        agent.println("first");
+        agent.flush();
+        assertEquals("", log.toString(StandardCharsets.UTF_8));
+
+        receiver.release();
+        assertEquals("first" + System.lineSeparator(), log.toString(StandardCharsets.UTF_8));
+
+        agent.println("second");
+        output.finish();
+        receiver.finish();
+        assertEquals(
+                "first" + System.lineSeparator() + "second" + System.lineSeparator(),
+                log.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void outputHeldBeyondLimitSpilledToFile() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        AgentOutput.Receiver receiver = AgentOutput.receiver(log, dir.toFile(), 64);
+        AgentOutput output = AgentOutput.of(receiver, 0);
+        PrintStream agent = new PrintStream(output, false, StandardCharsets.UTF_8);
+        StringBuilder expected = new StringBuilder();
+        agent.println("first");
+        agent.flush();
+        expected.append("first").append(System.lineSeparator());
+        assertEquals(0, countFiles());
+
+        for (int i = 0; i < 100; i++) {
+            agent.println("line " + i);
+            agent.flush();
+            expected.append("line ").append(i).append(System.lineSeparator());
+        }
+        assertEquals(1, countFiles());
+        assertEquals("", log.toString(StandardCharsets.UTF_8));
+
+        receiver.release();
+        assertEquals(0, countFiles());
+        agent.println("last");
+        output.finish();
+        receiver.finish();
+        expected.append("last").append(System.lineSeparator());
+        assertEquals(expected.toString(), log.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void outputDiscardedUnlessReleased() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        AgentOutput.Receiver receiver = AgentOutput.receiver(log, dir.toFile(), 64);
+        AgentOutput output = AgentOutput.of(receiver, 0);
+        PrintStream agent = new PrintStream(output, false, StandardCharsets.UTF_8);
+        for (int i = 0; i < 100; i++) {
+            agent.println("line " + i);
+            agent.flush();
+        }
+        assertEquals(1, countFiles());
+
+        receiver.finish();
+        assertEquals(0, countFiles());
+        agent.println("late");
+        output.finish();
+        receiver.release();
+        assertEquals("", log.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void linesBeyondLimitSuppressed() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        AgentOutput.Receiver receiver = AgentOutput.receiver(log, dir.toFile());
+        receiver.release();
+        AgentOutput output = AgentOutput.of(receiver, 1);
+        PrintStream agent = new PrintStream(output, false, StandardCharsets.UTF_8);
+        agent.println("first");
+        agent.println("second");
+        output.message(agent, "[Text Finder] message");
+        // Only the messages passed explicitly are exempt, not lines that look like them.
+        agent.println("[Text Finder] from a file");
+        agent.flush();
+        assertEquals(2, output.takeSuppressed());
+        assertEquals(0, output.takeSuppressed());
+        output.finish();
+        receiver.finish();
+        assertEquals(
+                "first" + System.lineSeparator() + "[Text Finder] message" + System.lineSeparator(),
+                log.toString(StandardCharsets.UTF_8));
+    }
+
+    private long countFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
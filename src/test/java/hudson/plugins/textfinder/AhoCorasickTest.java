@@ -0,0 +1,105 @@
+package hudson.plugins.textfinder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickTest {
+
+    @Test
+    void onlyBuiltForEnoughLiterals() {
+        assertNull(AhoCorasick.of(new String[] {"a", "b", "c", null}));
+        assertNotNull(AhoCorasick.of(new String[] {"a", "b", "c", "d"}));
+    }
+
+    @Test
+    void overlappingLiterals() {
+        assertFound(new String[] {"abab", "bab", "aba", "ba", "abc"}, "xababx");
+        assertFound(new String[] {"aaa", "aa", "a", "aaaa"}, "baab");
+    }
+
+    @Test
+    void literalIsSuffixOfAnother() {
+        String[] literals = {"she", "he", "hers", "his", "is"};
+        assertFound(literals, "ushers");
+        assertFound(literals, "this");
+        assertFound(literals, "sh");
+    }
+
+    @Test
+    void duplicateAndMissingLiterals() {
+        String[] literals = {"error", null, "error", "fail", "warn", "fail"};
+        assertFound(literals, "error: the build will fail");
+        assertFound(literals, "warn");
+        assertFound(literals, "");
+    }
+
+    @Test
+    void nonAsciiLiterals() {
+        String[] literals = {"größe", "日本", "😀", "ü", "gro"};
+        assertFound(literals, "Dateigröße: 日本語 😀");
+        assertFound(literals, "grosse 😁");
+        assertFound(literals, "über");
+    }
+
+    @Test
+    void sameAsContains() {
+        Random random = new Random(42);
+        String alphabet = "abcé日";
+        for (int n = 0; n < 2000; n++) {
+            String[] literals = new String[AhoCorasick.MIN_LITERALS + random.nextInt(4)];
+            for (int i = 0; i < literals.length; i++) {
+                literals[i] = random.nextInt(8) == 0 ? null : randomString(random, alphabet, 1 + random.nextInt(4));
+            }
+            assertFound(literals, randomString(random, alphabet, random.nextInt(30)));
+        }
+    }
+
+    @Test
+    void bufferSameAsContains() {
+        Random random = new Random(42);
+        String alphabet = "abc\néÿ";
+        for (int n = 0; n < 2000; n++) {
+            String[] literals = new String[AhoCorasick.MIN_LITERALS + random.nextInt(4)];
+            for (int i = 0; i < literals.length; i++) {
+                literals[i] = randomString(random, "abc", 1 + random.nextInt(4));
+            }
+            String text = randomString(random, alphabet, random.nextInt(30));
+            int start = random.nextInt(text.length() + 1);
+            int end = start + random.nextInt(text.length() - start + 1);
+
+            // Each character of the text is a single byte in ISO-8859-1, some of them negative.
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+            boolean[] found = new boolean[literals.length];
+            new AhoCorasick(literals).find(buffer, start, end, found);
+            assertArrayEquals(contains(literals, text.substring(start, end)), found, text + " " + start + " " + end);
+        }
+    }
+
+    private static void assertFound(String[] literals, String line) {
+        boolean[] found = new boolean[literals.length];
+        new AhoCorasick(literals).find(line, found);
+        assertArrayEquals(contains(literals, line), found, line);
+    }
+
+    private static boolean[] contains(String[] literals, String line) {
+        boolean[] expected = new boolean[literals.length];
+        for (int i = 0; i < literals.length; i++) {
+            expected[i] = literals[i] != null && line.contains(literals[i]);
+        }
+        return expected;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,158 @@
+package hudson.plugins.textfinder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import hudson.console.ConsoleNote;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ConsoleLineReaderTest {
+
+    private static final String NOTE = ConsoleNote.PREAMBLE_STR + "AAAA" + ConsoleNote.POSTAMBLE_STR;
+
+    @Test
+    void lineTerminators() throws Exception {
+        assertSameLines("");
+        assertSameLines("one\ntwo\n");
+        assertSameLines("one\rtwo\r");
+        assertSameLines("one\r\ntwo\r\n");
+        assertSameLines("one\n\r\n\rtwo\r\r\n\n");
+        assertSameLines("no terminator");
+        assertSameLines("one\r\nno terminator");
+        assertSameLines("\n\n");
+    }
+
+    @Test
+    void consoleNotes() throws Exception {
+        assertSameLines(NOTE + "Started by user\n");
+        assertSameLines("a" + NOTE + "b" + NOTE + "c\r\n");
+        // A note that spans lines is not a note.
+        assertSameLines("a" + ConsoleNote.PREAMBLE_STR + "AAAA\nB" + ConsoleNote.POSTAMBLE_STR + "c\n");
+        assertSameLines("a" + ConsoleNote.PREAMBLE_STR + "no postamble\n");
+        assertSameLines("a" + ConsoleNote.POSTAMBLE_STR + "no preamble\n");
+        // Removing the inner note joins the parts of an outer preamble.
+        String preamble = ConsoleNote.PREAMBLE_STR;
+        assertSameLines(
+                preamble.substring(0, 2) + NOTE + preamble.substring(2) + "x" + ConsoleNote.POSTAMBLE_STR + "y");
+    }
+
+    @Test
+    void linesLongerThanBuffer() throws Exception {
+        String line = "x".repeat(20000);
+        assertSameLines(line + "\r\n" + line + "\r" + line + NOTE + line);
+        // A carriage return at the end of a buffer, followed by a line feed at the start of the next
+        assertSameLines("x".repeat(8191) + "\r\nnext\n");
+    }
+
+    @Test
+    void sameAsBufferedReader() throws Exception {
+        Random random = new Random(42);
+        String[] pieces = {
+            "a", "é", "\n", "\r", "\r\n", NOTE, ConsoleNote.PREAMBLE_STR, ConsoleNote.POSTAMBLE_STR, "\u001B"
+        };
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            assertSameLines(sb.toString());
+        }
+    }
+
+    /**
+     * Compare the lines read, and their offsets, with those read by {@link BufferedReader} and
+     * stripped by {@link ConsoleNote#removeNotes}, reading a few bytes at a time to split lines,
+     * notes and terminators across reads.
+     */
+    private static void assertSameLines(String log) throws IOException {
+        for (Charset charset : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1}) {
+            byte[] bytes = log.getBytes(charset);
+            List<String> expected = new ArrayList<>();
+            try (BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), charset))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    expected.add(line);
+                }
+            }
+            List<Long> offsets = lineOffsets(bytes);
+
+            for (int chunk : new int[] {1, 3, 8192}) {
+                List<String> console = new ArrayList<>();
+                try (ConsoleLineReader reader = new ConsoleLineReader(new ChunkedInputStream(bytes, chunk), charset)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        console.add(line);
+                    }
+                }
+                List<String> stripped = new ArrayList<>();
+                for (String line : expected) {
+                    stripped.add(ConsoleNote.removeNotes(line));
+                }
+                assertEquals(stripped, console, log);
+
+                List<String> file = new ArrayList<>();
+                List<Long> fileOffsets = new ArrayList<>();
+                try (ConsoleLineReader reader =
+                        ConsoleLineReader.forFile(new ChunkedInputStream(bytes, chunk), charset, 0L)) {
+                    while (true) {
+                        long offset = reader.getOffset();
+                        String line = reader.readLine();
+                        if (line == null) {
+                            break;
+                        }
+                        file.add(line);
+                        fileOffsets.add(offset);
+                    }
+                }
+                assertEquals(expected, file, log);
+                assertEquals(offsets, fileOffsets, log);
+            }
+        }
+    }
+
+    /** The offset of the start of each line, with the same line terminators as {@link BufferedReader}. */
+    private static List<Long> lineOffsets(byte[] bytes) {
+        List<Long> offsets = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        while (i < bytes.length) {
+            if (bytes[i] == '\n' || bytes[i] == '\r') {
+                offsets.add((long) start);
+                i += bytes[i] == '\r' && i + 1 < bytes.length && bytes[i + 1] == '\n' ? 2 : 1;
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        if (start < bytes.length) {
+            offsets.add((long) start);
+        }
+        return offsets;
+    }
+
+    /** Returns at most a given number of bytes from each read. */
+    private static final class ChunkedInputStream extends ByteArrayInputStream {
+
+        private final int chunk;
+
+        ChunkedInputStream(byte[] bytes, int chunk) {
+            super(bytes);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, chunk));
+        }
+    }
+}
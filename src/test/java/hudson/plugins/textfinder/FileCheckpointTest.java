@@ -0,0 +1,68 @@
+package hudson.plugins.textfinder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileCheckpointTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void lineBoundary() throws Exception {
+        assertEquals(0L, lineBoundary("", 0L));
+        assertEquals(0L, lineBoundary("partial", 0L));
+        assertEquals(4L, lineBoundary("foo\nbar", 0L));
+        assertEquals(8L, lineBoundary("foo\nbar\n", 0L));
+        assertEquals(10L, lineBoundary("foo\r\nbar\r\n", 5L));
+        assertEquals(8L, lineBoundary("foo\rbar\rbaz", 0L));
+        // The line feed of a carriage return at the end of the file may not have been written yet.
+        assertEquals(4L, lineBoundary("foo\nbar\r", 0L));
+        assertEquals(4L, lineBoundary("foo\nbar", 4L));
+    }
+
+    @Test
+    void matchesUntilTruncatedOrReplaced() throws Exception {
+        Path log = dir.resolve("a.log");
+        Files.writeString(log, "first\nsecond\nthi");
+        FileCheckpoint checkpoint;
+        try (FileChannel channel = FileChannel.open(log)) {
+            checkpoint = FileCheckpoint.of(channel, 13L, 2L);
+        }
+        assertEquals(13L, checkpoint.getOffset());
+        assertEquals(2L, checkpoint.getLines());
+        assertTrue(matches(checkpoint, log));
+
+        Files.writeString(log, "rd\nfourth\n", StandardOpenOption.APPEND);
+        assertTrue(matches(checkpoint, log));
+
+        Files.writeString(log, "first\nsec");
+        assertFalse(matches(checkpoint, log));
+
+        Files.writeString(log, "other\nsecond\nthird\n");
+        assertFalse(matches(checkpoint, log));
+    }
+
+    private long lineBoundary(String text, long from) throws IOException {
+        Path file = dir.resolve("boundary.log");
+        Files.writeString(file, text);
+        try (FileChannel channel = FileChannel.open(file)) {
+            return FileCheckpoint.lineBoundary(channel, from, channel.size());
+        }
+    }
+
+    private static boolean matches(FileCheckpoint checkpoint, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return checkpoint.matches(channel, channel.size());
+        }
+    }
+}
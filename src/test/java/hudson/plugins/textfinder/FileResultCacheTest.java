@@ -0,0 +1,81 @@
+package hudson.plugins.textfinder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileResultCacheTest {
+
+    private static final FileTime MODIFIED = FileTime.fromMillis(1_000_000_000_000L);
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void replaysUnchangedFile() throws Exception {
+        File file = write("a.txt", "foo");
+        FileResultCache cache = new FileResultCache(1024L);
+        ScanResult result = new ScanResult(1);
+        result.setFound(0);
+        cache.put(
+                FileResultCache.key(file, "foo"),
+                FileResultCache.Outcome.of(
+                        result, "foo\n".getBytes(StandardCharsets.UTF_8), FileResultCache.attributes(file)));
+
+        FileResultCache.Outcome outcome = cache.get(FileResultCache.key(file, "foo"));
+        assertNotNull(outcome);
+        assertTrue(outcome.isUnchanged(FileResultCache.attributes(file)));
+        assertTrue(outcome.getResult().isFound(0));
+        assertArrayEquals("foo\n".getBytes(StandardCharsets.UTF_8), outcome.getOutput());
+
+        // Other patterns, or other contents, are scanned again.
+        assertNull(cache.get(FileResultCache.key(file, "bar")));
+        write("a.txt", "foobar");
+        assertFalse(outcome.isUnchanged(FileResultCache.attributes(file)));
+    }
+
+    @Test
+    void recentlyModifiedFileIsRacy() throws Exception {
+        File file = write("a.txt", "foo");
+        assertFalse(FileResultCache.isRacy(FileResultCache.attributes(file)));
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+        assertTrue(FileResultCache.isRacy(FileResultCache.attributes(file)));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        FileResultCache cache = new FileResultCache(5_000L);
+        FileResultCache.Key a = put(cache, "a.txt");
+        FileResultCache.Key b = put(cache, "b.txt");
+        assertNotNull(cache.get(a));
+        FileResultCache.Key c = put(cache, "c.txt");
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+    }
+
+    private FileResultCache.Key put(FileResultCache cache, String name) throws Exception {
+        File file = write(name, name);
+        FileResultCache.Key key = FileResultCache.key(file, "foo");
+        cache.put(
+                key, FileResultCache.Outcome.of(new ScanResult(1), new byte[2_000], FileResultCache.attributes(file)));
+        return key;
+    }
+
+    private File write(String name, String text) throws Exception {
+        Path path = dir.resolve(name);
+        Files.writeString(path, text);
+        Files.setLastModifiedTime(path, MODIFIED);
+        return path.toFile();
+    }
+}
@@ -0,0 +1,143 @@
+package hudson.plugins.textfinder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileSetWalkerTest {
+
+    @TempDir
+    private Path dir;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        for (String file : new String[] {
+            "a.txt",
+            "b.log",
+            "src/main/c.txt",
+            "src/main/d.log",
+            "target/reports/e.log",
+            "target/reports/f~",
+            "node_modules/g/h.txt",
+            ".git/config",
+            ".git/i.txt",
+            "j.txt/k.log",
+        }) {
+            Path path = dir.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file);
+        }
+    }
+
+    @Test
+    void sameAsDirectoryScanner() throws Exception {
+        for (String includes : new String[] {
+            "**",
+            "*.txt",
+            "**/*.txt",
+            "**/*.log, *.txt",
+            "src/",
+            "src/**/*.log",
+            "target/**",
+            "**/reports/*",
+            "*/main/?.txt",
+            "a.txt",
+            "src/main/c.txt",
+            "j.txt/**",
+            "missing/**",
+            ".git/**",
+        }) {
+            assertArrayEquals(scan(includes), new FileSetWalker(includes).walk(dir.toFile()), includes);
+        }
+    }
+
+    @Test
+    void excludesSameAsDirectoryScanner() throws Exception {
+        for (String excludes : new String[] {"**/node_modules/**", "src/", "**/*.log, a.txt", "**/reports"}) {
+            for (boolean defaultExcludes : new boolean[] {true, false}) {
+                assertArrayEquals(
+                        scan("**", excludes, defaultExcludes),
+                        new FileSetWalker("**", excludes, defaultExcludes, null).walk(dir.toFile()),
+                        excludes);
+            }
+        }
+    }
+
+    @Test
+    void patternsWithLiteralPrefix() throws Exception {
+        assertArrayEquals(
+                new String[] {path("src/main/d.log")}, new FileSetWalker("src/**/*.log").walk(dir.toFile()));
+        assertArrayEquals(
+                new String[] {path("target/reports/e.log")},
+                new FileSetWalker("target/reports/*").walk(dir.toFile()));
+    }
+
+    @Test
+    void directoryIndex() throws Exception {
+        Path src = dir.resolve("src/main");
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis() - 60_000L);
+        Files.setLastModifiedTime(src, modified);
+        DirectoryIndex index = new DirectoryIndex(100);
+        String[] files = new FileSetWalker("src/**", null, true, index).walk(dir.toFile());
+        assertArrayEquals(new String[] {path("src/main/c.txt"), path("src/main/d.log")}, files);
+
+        // A cached listing is used as long as the modification time of the directory is unchanged.
+        Files.writeString(src.resolve("e.txt"), "e.txt");
+        Files.setLastModifiedTime(src, modified);
+        assertArrayEquals(files, new FileSetWalker("src/**", null, true, index).walk(dir.toFile()));
+
+        Files.setLastModifiedTime(src, FileTime.fromMillis(modified.toMillis() + 1_000L));
+        assertArrayEquals(
+                new String[] {path("src/main/c.txt"), path("src/main/d.log"), path("src/main/e.txt")},
+                new FileSetWalker("src/**", null, true, index).walk(dir.toFile()));
+    }
+
+    @Test
+    void missingDirectory() throws Exception {
+        assertArrayEquals(new String[0], new FileSetWalker("**").walk(dir.resolve("missing").toFile()));
+    }
+
+    @Test
+    void stopsWhenInterrupted() throws Exception {
+        List<String> visited = new ArrayList<>();
+        assertThrows(InterruptedException.class, () -> new FileSetWalker("**").walk(dir.toFile(), file -> {
+            visited.add(file);
+            Thread.currentThread().interrupt();
+        }));
+        assertEquals(List.of("a.txt"), visited);
+        assertFalse(Thread.interrupted());
+    }
+
+    private String[] scan(String includes) {
+        return scan(includes, null, true);
+    }
+
+    private String[] scan(String includes, String excludes, boolean defaultExcludes) {
+        FileSet fs = new FileSet();
+        Project p = new Project();
+        fs.setProject(p);
+        fs.setDir(dir.toFile());
+        fs.setIncludes(includes);
+        fs.setExcludes(excludes);
+        fs.setDefaultexcludes(defaultExcludes);
+        return fs.getDirectoryScanner(p).getIncludedFiles();
+    }
+
+    private static String path(String path) {
+        return path.replace('/', File.separatorChar);
+    }
+}
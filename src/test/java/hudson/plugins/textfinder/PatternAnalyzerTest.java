@@ -0,0 +1,58 @@
+package hudson.plugins.textfinder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class PatternAnalyzerTest {
+
+    @Test
+    void plainString() {
+        PatternAnalyzer analyzer = PatternAnalyzer.analyze("BUILD FAILED");
+        assertEquals("BUILD FAILED", analyzer.getRequiredLiteral());
+        assertTrue(analyzer.isExact());
+    }
+
+    @Test
+    void escapedMetacharacters() {
+        PatternAnalyzer analyzer = PatternAnalyzer.analyze("BUILD\\.FAILED\\Q (1)\\E");
+        assertEquals("BUILD.FAILED (1)", analyzer.getRequiredLiteral());
+        assertTrue(analyzer.isExact());
+    }
+
+    @Test
+    void prefix() {
+        PatternAnalyzer analyzer = PatternAnalyzer.analyze("ERROR: .*");
+        assertEquals("ERROR: ", analyzer.getRequiredLiteral());
+        assertFalse(analyzer.isExact());
+    }
+
+    @Test
+    void longestRequiredRun() {
+        assertEquals(" tests failed", PatternAnalyzer.analyze("\\d+ tests failed").getRequiredLiteral());
+        assertEquals("Exception", PatternAnalyzer.analyze("[A-Z]\\w+Exceptions?").getRequiredLiteral());
+        assertEquals("foo", PatternAnalyzer.analyze("foo(?=bar)").getRequiredLiteral());
+        assertEquals("ab", PatternAnalyzer.analyze("ab+c").getRequiredLiteral());
+    }
+
+    @Test
+    void quantifiedSupplementaryCharacter() {
+        assertEquals("x", PatternAnalyzer.analyze("x\uD83D\uDE00?").getRequiredLiteral());
+        assertEquals("x", PatternAnalyzer.analyze("x\\\uD83D\uDE00*").getRequiredLiteral());
+        assertEquals("x\uD83D\uDE00", PatternAnalyzer.analyze("x\uD83D\uDE00+").getRequiredLiteral());
+        assertTrue(Pattern.compile("x\uD83D\uDE00?").matcher("x").find());
+    }
+
+    @Test
+    void noLiteral() {
+        assertNull(PatternAnalyzer.analyze("error|failure"));
+        assertNull(PatternAnalyzer.analyze("(?i)error"));
+        assertNull(PatternAnalyzer.analyze("\\x41BC"));
+        assertNull(PatternAnalyzer.analyze("[abc]+"));
+        assertNull(PatternAnalyzer.analyze(""));
+    }
+}
@@ -312,5 +312,6 @@ class TextFinderPublisherFreestyleCompatibilityTest {
         assertEquals(Result.FAILURE.toString(), textFinder.getBuildResult());
         assertEquals(TextFinderChangeCondition.MATCH_FOUND, textFinder.getChangeCondition());
         assertFalse(textFinder.isAlsoCheckConsoleOutput());
+        assertTrue(textFinder.isDefaultExcludes());
     }
 }
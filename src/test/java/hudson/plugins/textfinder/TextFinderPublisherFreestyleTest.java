@@ -9,9 +9,14 @@ import hudson.model.FreeStyleProject;
 import hudson.model.Result;
 import hudson.plugins.textfinder.test.TestEchoBuilder;
 import hudson.plugins.textfinder.test.TestWriteFileBuilder;
+import hudson.util.FormValidation;
 import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import org.htmlunit.WebClientUtil;
 import org.htmlunit.html.HtmlButton;
 import org.htmlunit.html.HtmlElement;
@@ -198,6 +203,25 @@ class TextFinderPublisherFreestyleTest {
                 build);
     }
 
+    @Test
+    void successIfFoundOnlyInExcludedFiles(JenkinsRule rule) throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject();
+        project.getBuildersList().add(new TestWriteFileBuilder("logs/build.log", "foobaz"));
+        project.getBuildersList().add(new TestWriteFileBuilder("logs/vendor/lib.log", TestUtils.UNIQUE_TEXT));
+        TextFinder textFinder = new TextFinder(TestUtils.UNIQUE_TEXT);
+        textFinder.setFileSet("**/*.log");
+        textFinder.setExcludes("**/vendor/**");
+        TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+        textFinderPublisher.setTextFinders(Collections.singletonList(textFinder));
+        project.getPublishersList().add(textFinderPublisher);
+        FreeStyleBuild build = rule.buildAndAssertSuccess(project);
+        rule.assertLogContains(
+                "[Text Finder] Finished searching for pattern '"
+                        + TestUtils.UNIQUE_TEXT
+                        + "' in file set '**/*.log' excluding '**/vendor/**'.",
+                build);
+    }
+
     @Test
     void failureIfNotFoundInFile(JenkinsRule rule) throws Exception {
         FreeStyleProject project = rule.createFreeStyleProject();
@@ -226,6 +250,79 @@ class TextFinderPublisherFreestyleTest {
         rule.assertLogContains("Setting build result to 'FAILURE'.", build);
     }
 
+    @Test
+    void failureIfFoundInMemoryMappedFile(JenkinsRule rule) throws Exception {
+        long threshold = TextFinderPublisher.MEMORY_MAPPED_SCAN_THRESHOLD;
+        TextFinderPublisher.MEMORY_MAPPED_SCAN_THRESHOLD = 0;
+        try {
+            FreeStyleProject project = rule.createFreeStyleProject();
+            project.getBuildersList()
+                    .add(new TestWriteFileBuilder(TestUtils.FILE_SET, "xyzzy\r\n" + TestUtils.UNIQUE_TEXT + "\nlast"));
+            TextFinder textFinder = new TextFinder(TestUtils.UNIQUE_TEXT);
+            textFinder.setFileSet(TestUtils.FILE_SET);
+            TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+            textFinderPublisher.setTextFinders(Collections.singletonList(textFinder));
+            project.getPublishersList().add(textFinderPublisher);
+            FreeStyleBuild build = rule.buildAndAssertStatus(Result.FAILURE, project);
+            TestUtils.assertFileContainsMatch(
+                    new File(build.getWorkspace().getRemote(), TestUtils.FILE_SET),
+                    TestUtils.UNIQUE_TEXT,
+                    rule,
+                    build);
+            rule.assertLogNotContains("xyzzy", build);
+            rule.assertLogContains("Setting build result to 'FAILURE'.", build);
+        } finally {
+            TextFinderPublisher.MEMORY_MAPPED_SCAN_THRESHOLD = threshold;
+        }
+    }
+
+    @Test
+    void failureIfFoundInFilesScannedInParallel(JenkinsRule rule) throws Exception {
+        int parallelism = TextFinderPublisher.SCAN_PARALLELISM;
+        TextFinderPublisher.SCAN_PARALLELISM = 4;
+        try {
+            FreeStyleProject project = rule.createFreeStyleProject();
+            project.getBuildersList().add(new TestWriteFileBuilder("a.txt", "nothing to see here"));
+            project.getBuildersList().add(new TestWriteFileBuilder("b.txt", TestUtils.UNIQUE_TEXT));
+            project.getBuildersList().add(new TestWriteFileBuilder("c.txt", "nothing to see here"));
+            TextFinder textFinder = new TextFinder(TestUtils.UNIQUE_TEXT);
+            textFinder.setFileSet("*.txt");
+            TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+            textFinderPublisher.setTextFinders(Collections.singletonList(textFinder));
+            project.getPublishersList().add(textFinderPublisher);
+            FreeStyleBuild build = rule.buildAndAssertStatus(Result.FAILURE, project);
+            TestUtils.assertFileContainsMatch(
+                    new File(build.getWorkspace().getRemote(), "b.txt"), TestUtils.UNIQUE_TEXT, rule, build);
+            rule.assertLogContains("Setting build result to 'FAILURE'.", build);
+        } finally {
+            TextFinderPublisher.SCAN_PARALLELISM = parallelism;
+        }
+    }
+
+    @Test
+    void unstableIfMatchTimesOut(JenkinsRule rule) throws Exception {
+        long timeout = TextFinderPublisher.LINE_MATCH_TIMEOUT_MILLIS;
+        TextFinderPublisher.LINE_MATCH_TIMEOUT_MILLIS = 100;
+        try {
+            FreeStyleProject project = rule.createFreeStyleProject();
+            // The line contains the required literal "b", so that the expression is evaluated and backtracks.
+            project.getBuildersList().add(new TestWriteFileBuilder(TestUtils.FILE_SET, "a".repeat(30) + "!b"));
+            TextFinder textFinder = new TextFinder("(.*a){20}b");
+            textFinder.setFileSet(TestUtils.FILE_SET);
+            TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+            textFinderPublisher.setTextFinders(Collections.singletonList(textFinder));
+            project.getPublishersList().add(textFinderPublisher);
+            FreeStyleBuild build = rule.buildAndAssertStatus(Result.UNSTABLE, project);
+            rule.assertLogContains(
+                    "[Text Finder] Time budget exceeded while searching for pattern '(.*a){20}b' in file '"
+                            + new File(build.getWorkspace().getRemote(), TestUtils.FILE_SET)
+                            + "'",
+                    build);
+        } finally {
+            TextFinderPublisher.LINE_MATCH_TIMEOUT_MILLIS = timeout;
+        }
+    }
+
     @Test
     void multipleTextFindersInFile(JenkinsRule rule) throws Exception {
         FreeStyleProject project = rule.createFreeStyleProject();
@@ -262,6 +359,58 @@ class TextFinderPublisherFreestyleTest {
         rule.assertLogContains("Setting build result to 'UNSTABLE'.", build);
     }
 
+    @Test
+    void multipleTextFindersSharingFileSet(JenkinsRule rule) throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject();
+        project.getBuildersList().add(new TestWriteFileBuilder(TestUtils.FILE_SET, TestUtils.UNIQUE_TEXT));
+        TextFinder tf1 = new TextFinder(TestUtils.UNIQUE_TEXT);
+        tf1.setFileSet(TestUtils.FILE_SET);
+        tf1.setBuildResult(Result.UNSTABLE.toString());
+        TextFinder tf2 = new TextFinder("nomatch");
+        tf2.setFileSet(TestUtils.FILE_SET);
+        TextFinder tf3 = new TextFinder("nomatch");
+        tf3.setFileSet(TestUtils.FILE_SET);
+        tf3.setChangeCondition(TextFinderChangeCondition.MATCH_NOT_FOUND);
+        tf3.setBuildResult(Result.NOT_BUILT.toString());
+        TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+        textFinderPublisher.setTextFinders(Arrays.asList(tf1, tf2, tf3));
+        project.getPublishersList().add(textFinderPublisher);
+        FreeStyleBuild build = rule.buildAndAssertStatus(Result.NOT_BUILT, project);
+        TestUtils.assertFileContainsMatch(
+                new File(build.getWorkspace().getRemote(), TestUtils.FILE_SET), TestUtils.UNIQUE_TEXT, rule, build);
+        rule.assertLogContains(
+                "[Text Finder] Finished searching for pattern 'nomatch' in file set '" + TestUtils.FILE_SET + "'.",
+                build);
+        rule.assertLogContains("Setting build result to 'UNSTABLE'.", build);
+        rule.assertLogContains("Setting build result to 'NOT_BUILT'.", build);
+        rule.assertLogNotContains("Setting build result to 'FAILURE'.", build);
+    }
+
+    @Test
+    void multipleTextFindersInDifferentFileSets(JenkinsRule rule) throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject();
+        project.getBuildersList().add(new TestWriteFileBuilder(TestUtils.FILE_SET, TestUtils.UNIQUE_TEXT));
+        project.getBuildersList().add(new TestWriteFileBuilder("other.txt", "foobaz"));
+        TextFinder tf1 = new TextFinder(TestUtils.UNIQUE_TEXT);
+        tf1.setFileSet(TestUtils.FILE_SET);
+        tf1.setBuildResult(Result.UNSTABLE.toString());
+        TextFinder tf2 = new TextFinder("foobaz");
+        tf2.setFileSet("other.txt");
+        tf2.setChangeCondition(TextFinderChangeCondition.MATCH_NOT_FOUND);
+        TextFinder tf3 = new TextFinder(TestUtils.UNIQUE_TEXT);
+        tf3.setFileSet("missing/**");
+        TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+        textFinderPublisher.setTextFinders(Arrays.asList(tf1, tf2, tf3));
+        project.getPublishersList().add(textFinderPublisher);
+        FreeStyleBuild build = rule.buildAndAssertStatus(Result.UNSTABLE, project);
+        TestUtils.assertFileContainsMatch(
+                new File(build.getWorkspace().getRemote(), TestUtils.FILE_SET), TestUtils.UNIQUE_TEXT, rule, build);
+        rule.assertLogContains("[Text Finder] Finished searching for pattern 'foobaz' in file set 'other.txt'.", build);
+        rule.assertLogContains("[Text Finder] File set 'missing/**' is empty", build);
+        rule.assertLogContains("Setting build result to 'UNSTABLE'.", build);
+        rule.assertLogNotContains("Setting build result to 'FAILURE'.", build);
+    }
+
     @Test
     void successIfFoundInConsole(JenkinsRule rule) throws Exception {
         FreeStyleProject project = rule.createFreeStyleProject();
@@ -405,6 +554,267 @@ class TextFinderPublisherFreestyleTest {
         rule.assertLogContains("Setting build result to 'UNSTABLE'.", build);
     }
 
+    @Test
+    void multipleTextFindersSharingConsoleRead(JenkinsRule rule) throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject();
+        project.getBuildersList().add(new TestEchoBuilder("alpha early"));
+        project.getBuildersList().add(new TestEchoBuilder("beta"));
+        project.getBuildersList().add(new TestEchoBuilder("gamma late early"));
+        TextFinder early = new TextFinder("early");
+        early.setAlsoCheckConsoleOutput(true);
+        early.setBuildResult(Result.UNSTABLE.toString());
+        TextFinder late = new TextFinder("late");
+        late.setAlsoCheckConsoleOutput(true);
+        late.setChangeCondition(TextFinderChangeCondition.MATCH_NOT_FOUND);
+        TextFinder never = new TextFinder("never");
+        never.setAlsoCheckConsoleOutput(true);
+        never.setChangeCondition(TextFinderChangeCondition.MATCH_NOT_FOUND);
+        never.setBuildResult(Result.UNSTABLE.toString());
+        TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+        textFinderPublisher.setTextFinders(Arrays.asList(early, late, never));
+        project.getPublishersList().add(textFinderPublisher);
+        FreeStyleBuild build = rule.buildAndAssertStatus(Result.UNSTABLE, project);
+        List<String> log = build.getLog(Integer.MAX_VALUE);
+        assertEquals(1, Collections.frequency(log, "[Text Finder] Searching console output..."));
+        // Echoed by the build, then logged once by the search as the first match of a pattern.
+        assertEquals(2, Collections.frequency(log, TestUtils.PREFIX + "alpha early"));
+        assertEquals(1, Collections.frequency(log, TestUtils.PREFIX + "beta"));
+        assertEquals(2, Collections.frequency(log, TestUtils.PREFIX + "gamma late early"));
+        rule.assertLogContains("Finished searching for pattern 'early' in console output.", build);
+        rule.assertLogContains("Finished searching for pattern 'late' in console output.", build);
+        rule.assertLogContains("Finished searching for pattern 'never' in console output.", build);
+        rule.assertLogNotContains("Setting build result to 'FAILURE'.", build);
+        assertEquals(2, Collections.frequency(log, "[Text Finder] Setting build result to 'UNSTABLE'."));
+    }
+
+    @Test
+    void failureIfFoundInConsoleWhileStreaming(JenkinsRule rule) throws Exception {
+        boolean streaming = TextFinderPublisher.STREAMING_CONSOLE_SCAN;
+        TextFinderPublisher.STREAMING_CONSOLE_SCAN = true;
+        try {
+            FreeStyleProject project = rule.createFreeStyleProject();
+            project.getBuildersList().add(new TestEchoBuilder(TestUtils.UNIQUE_TEXT));
+            TextFinder tf1 = new TextFinder(TestUtils.UNIQUE_TEXT);
+            tf1.setAlsoCheckConsoleOutput(true);
+            TextFinder tf2 = new TextFinder("xyzzy");
+            tf2.setAlsoCheckConsoleOutput(true);
+            tf2.setChangeCondition(TextFinderChangeCondition.MATCH_NOT_FOUND);
+            tf2.setBuildResult(Result.UNSTABLE.toString());
+            TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+            textFinderPublisher.setTextFinders(Arrays.asList(tf1, tf2));
+            project.getPublishersList().add(textFinderPublisher);
+            FreeStyleBuild build = rule.buildAndAssertStatus(Result.FAILURE, project);
+            rule.assertLogContains("[Text Finder] Searching console output...", build);
+            rule.assertLogContains(TestUtils.PREFIX + TestUtils.UNIQUE_TEXT, build);
+            rule.assertLogContains(
+                    "Finished searching for pattern '" + TestUtils.UNIQUE_TEXT + "' in console output.", build);
+            rule.assertLogContains("Finished searching for pattern 'xyzzy' in console output.", build);
+            int line = build.getLog(Integer.MAX_VALUE).indexOf(TestUtils.PREFIX + TestUtils.UNIQUE_TEXT) + 1;
+            String log;
+            try (InputStream is = build.getLogInputStream()) {
+                log = new String(is.readAllBytes(), StandardCharsets.ISO_8859_1);
+            }
+            int offset = log.indexOf("\n" + TestUtils.PREFIX + TestUtils.UNIQUE_TEXT) + 1;
+            rule.assertLogContains(
+                    "[Text Finder] Pattern '"
+                            + TestUtils.UNIQUE_TEXT
+                            + "' first found in console output at line "
+                            + line
+                            + ", offset "
+                            + offset
+                            + ".",
+                    build);
+            rule.assertLogNotContains("[Text Finder] Pattern 'xyzzy' first found", build);
+            rule.assertLogContains("Setting build result to 'FAILURE'.", build);
+            rule.assertLogContains("Setting build result to 'UNSTABLE'.", build);
+        } finally {
+            TextFinderPublisher.STREAMING_CONSOLE_SCAN = streaming;
+        }
+    }
+
+    @Test
+    void failureIfFoundInConsoleScannedInParallel(JenkinsRule rule) throws Exception {
+        int parallelism = TextFinderPublisher.CONSOLE_SCAN_PARALLELISM;
+        TextFinderPublisher.CONSOLE_SCAN_PARALLELISM = 4;
+        try {
+            FreeStyleProject project = rule.createFreeStyleProject();
+            project.getBuildersList().add(new TestEchoBuilder(TestUtils.UNIQUE_TEXT));
+            TextFinder textFinder = new TextFinder(TestUtils.UNIQUE_TEXT);
+            textFinder.setAlsoCheckConsoleOutput(true);
+            TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+            textFinderPublisher.setTextFinders(Collections.singletonList(textFinder));
+            project.getPublishersList().add(textFinderPublisher);
+            FreeStyleBuild build = rule.buildAndAssertStatus(Result.FAILURE, project);
+            rule.assertLogContains("[Text Finder] Searching console output...", build);
+            rule.assertLogContains(TestUtils.PREFIX + TestUtils.UNIQUE_TEXT, build);
+            rule.assertLogContains("Setting build result to 'FAILURE'.", build);
+        } finally {
+            TextFinderPublisher.CONSOLE_SCAN_PARALLELISM = parallelism;
+        }
+    }
+
+    @Test
+    void matchesInConsoleScannedInSeveralRangesReportedInOrder(JenkinsRule rule) throws Exception {
+        int parallelism = TextFinderPublisher.CONSOLE_SCAN_PARALLELISM;
+        long minRangeBytes = TextFinderPublisher.CONSOLE_SCAN_MIN_RANGE_BYTES;
+        TextFinderPublisher.CONSOLE_SCAN_PARALLELISM = 4;
+        TextFinderPublisher.CONSOLE_SCAN_MIN_RANGE_BYTES = 64;
+        try {
+            FreeStyleProject project = rule.createFreeStyleProject();
+            for (int i = 1; i <= 20; i++) {
+                project.getBuildersList().add(new TestEchoBuilder("filler " + i));
+                project.getBuildersList().add(new TestEchoBuilder(TestUtils.UNIQUE_TEXT + " " + i));
+            }
+            TextFinder first = new TextFinder(TestUtils.UNIQUE_TEXT);
+            first.setAlsoCheckConsoleOutput(true);
+            TextFinder all = new TextFinder(TestUtils.UNIQUE_TEXT);
+            all.setAlsoCheckConsoleOutput(true);
+            all.setConsoleAllMatches(true);
+            TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+            textFinderPublisher.setTextFinders(Arrays.asList(first, all));
+            project.getPublishersList().add(textFinderPublisher);
+            FreeStyleBuild build = rule.buildAndAssertStatus(Result.FAILURE, project);
+
+            // The echoed lines, then the first match, then every match in the order of the console.
+            List<String> expected = new ArrayList<>();
+            for (int i = 1; i <= 20; i++) {
+                expected.add(TestUtils.PREFIX + TestUtils.UNIQUE_TEXT + " " + i);
+            }
+            expected.add(TestUtils.PREFIX + TestUtils.UNIQUE_TEXT + " 1");
+            for (int i = 1; i <= 20; i++) {
+                expected.add(TestUtils.PREFIX + TestUtils.UNIQUE_TEXT + " " + i);
+            }
+            List<String> matches = new ArrayList<>();
+            for (String line : build.getLog(Integer.MAX_VALUE)) {
+                if (line.startsWith(TestUtils.PREFIX + TestUtils.UNIQUE_TEXT)) {
+                    matches.add(line);
+                }
+            }
+            assertEquals(expected, matches);
+            rule.assertLogContains(
+                    "[Text Finder] Found 20 matching lines for pattern '"
+                            + TestUtils.UNIQUE_TEXT
+                            + "' in console output.",
+                    build);
+        } finally {
+            TextFinderPublisher.CONSOLE_SCAN_PARALLELISM = parallelism;
+            TextFinderPublisher.CONSOLE_SCAN_MIN_RANGE_BYTES = minRangeBytes;
+        }
+    }
+
+    @Test
+    void reportsMatchingLinesInFile(JenkinsRule rule) throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject();
+        String text = "foobaz\n" + TestUtils.UNIQUE_TEXT + "\nfoobaz\n" + TestUtils.UNIQUE_TEXT + "\n";
+        project.getBuildersList().add(new TestWriteFileBuilder(TestUtils.FILE_SET, text));
+        TextFinder textFinder = new TextFinder(TestUtils.UNIQUE_TEXT);
+        textFinder.setFileSet(TestUtils.FILE_SET);
+        TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+        textFinderPublisher.setTextFinders(Collections.singletonList(textFinder));
+        project.getPublishersList().add(textFinderPublisher);
+        FreeStyleBuild build = rule.buildAndAssertStatus(Result.FAILURE, project);
+        rule.assertLogContains(
+                "[Text Finder] Found 2 matching lines for pattern '"
+                        + TestUtils.UNIQUE_TEXT
+                        + "' in file set '"
+                        + TestUtils.FILE_SET
+                        + "', first at "
+                        + new File(build.getWorkspace().getRemote(), TestUtils.FILE_SET)
+                        + ":2.",
+                build);
+    }
+
+    @Test
+    void failureIfFoundInFileWithOutputLimited(JenkinsRule rule) throws Exception {
+        int maxLines = TextFinderPublisher.FILE_OUTPUT_MAX_LINES;
+        TextFinderPublisher.FILE_OUTPUT_MAX_LINES = 2;
+        try {
+            FreeStyleProject project = rule.createFreeStyleProject();
+            String text = "first " + TestUtils.UNIQUE_TEXT + "\nsecond " + TestUtils.UNIQUE_TEXT;
+            project.getBuildersList().add(new TestWriteFileBuilder(TestUtils.FILE_SET, text));
+            TextFinder textFinder = new TextFinder(TestUtils.UNIQUE_TEXT);
+            textFinder.setFileSet(TestUtils.FILE_SET);
+            TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+            textFinderPublisher.setTextFinders(Collections.singletonList(textFinder));
+            project.getPublishersList().add(textFinderPublisher);
+            FreeStyleBuild build = rule.buildAndAssertStatus(Result.FAILURE, project);
+            rule.assertLogContains("first " + TestUtils.UNIQUE_TEXT, build);
+            rule.assertLogNotContains("second " + TestUtils.UNIQUE_TEXT, build);
+            rule.assertLogContains(
+                    "[Text Finder] Suppressed 1 lines of output from file set '"
+                            + TestUtils.FILE_SET
+                            + "' beyond the limit of 2 lines",
+                    build);
+            rule.assertLogContains("Setting build result to 'FAILURE'.", build);
+        } finally {
+            TextFinderPublisher.FILE_OUTPUT_MAX_LINES = maxLines;
+        }
+    }
+
+    @Test
+    void successIfFoundOnlyBeforeConsoleTail(JenkinsRule rule) throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject();
+        project.getBuildersList().add(new TestEchoBuilder(TestUtils.UNIQUE_TEXT));
+        project.getBuildersList().add(new TestEchoBuilder("filler 1"));
+        project.getBuildersList().add(new TestEchoBuilder("filler 2"));
+        // Logs the matching line again, along with the pattern, before the tail is searched.
+        TextFinder wholeConsole = new TextFinder(TestUtils.UNIQUE_TEXT);
+        wholeConsole.setAlsoCheckConsoleOutput(true);
+        wholeConsole.setBuildResult(Result.SUCCESS.toString());
+        TextFinder tail = new TextFinder(TestUtils.UNIQUE_TEXT);
+        tail.setAlsoCheckConsoleOutput(true);
+        tail.setConsoleTailLines(2);
+        TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+        textFinderPublisher.setTextFinders(Arrays.asList(wholeConsole, tail));
+        project.getPublishersList().add(textFinderPublisher);
+        FreeStyleBuild build = rule.buildAndAssertSuccess(project);
+        rule.assertLogContains("[Text Finder] Searching last 2 lines of console output...", build);
+        rule.assertLogContains(
+                "Finished searching for pattern '" + TestUtils.UNIQUE_TEXT + "' in last 2 lines of console output.",
+                build);
+        // Echoed by the build, then logged by the search of the whole console output only.
+        assertEquals(
+                2, Collections.frequency(build.getLog(Integer.MAX_VALUE), TestUtils.PREFIX + TestUtils.UNIQUE_TEXT));
+        rule.assertLogNotContains("Setting build result", build);
+    }
+
+    @Test
+    void failureIfFoundInConsoleTailSearchingBackwards(JenkinsRule rule) throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject();
+        project.getBuildersList().add(new TestEchoBuilder(TestUtils.UNIQUE_TEXT));
+        project.getBuildersList().add(new TestEchoBuilder("filler"));
+        TextFinder textFinder = new TextFinder(TestUtils.UNIQUE_TEXT);
+        textFinder.setAlsoCheckConsoleOutput(true);
+        textFinder.setConsoleTailLines(1);
+        textFinder.setConsoleTailBackwards(true);
+        TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+        textFinderPublisher.setTextFinders(Collections.singletonList(textFinder));
+        project.getPublishersList().add(textFinderPublisher);
+        FreeStyleBuild build = rule.buildAndAssertStatus(Result.FAILURE, project);
+        rule.assertLogContains(TestUtils.PREFIX + TestUtils.UNIQUE_TEXT, build);
+        rule.assertLogContains("Setting build result to 'FAILURE'.", build);
+    }
+
+    @Test
+    void listAllMatchesInConsole(JenkinsRule rule) throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject();
+        project.getBuildersList().add(new TestEchoBuilder(TestUtils.UNIQUE_TEXT + " 1"));
+        project.getBuildersList().add(new TestEchoBuilder("nothing to see here"));
+        project.getBuildersList().add(new TestEchoBuilder(TestUtils.UNIQUE_TEXT + " 2"));
+        TextFinder textFinder = new TextFinder(TestUtils.UNIQUE_TEXT);
+        textFinder.setAlsoCheckConsoleOutput(true);
+        textFinder.setConsoleAllMatches(true);
+        TextFinderPublisher textFinderPublisher = new TextFinderPublisher();
+        textFinderPublisher.setTextFinders(Collections.singletonList(textFinder));
+        project.getPublishersList().add(textFinderPublisher);
+        FreeStyleBuild build = rule.buildAndAssertStatus(Result.FAILURE, project);
+        rule.assertLogContains(
+                "Found 2 matching lines for pattern '" + TestUtils.UNIQUE_TEXT + "' in console output.", build);
+        rule.assertLogContains(
+                "Finished searching for pattern '" + TestUtils.UNIQUE_TEXT + "' in console output.", build);
+        rule.assertLogContains("Setting build result to 'FAILURE'.", build);
+    }
+
     @Test
     void createTextFinderViaWebClient(JenkinsRule rule) throws Exception {
         FreeStyleProject project = rule.createFreeStyleProject();
@@ -451,4 +861,19 @@ class TextFinderPublisherFreestyleTest {
         assertEquals(Result.UNSTABLE.toString(), textFinder.getBuildResult());
         assertTrue(textFinder.isAlsoCheckConsoleOutput());
     }
+
+    @Test
+    void regexpValidatedWithSelectedEngine(JenkinsRule rule) {
+        TextFinder.DescriptorImpl descriptor = rule.jenkins.getDescriptorByType(TextFinder.DescriptorImpl.class);
+        String java = TextFinderRegexEngine.JAVA.name();
+        String re2j = TextFinderRegexEngine.RE2J.name();
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckRegexp("(a)\\1", java).kind);
+        assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckRegexp("(?P<name>a)", java).kind);
+        assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckRegexp("(a", java).kind);
+        // Backreferences are evaluated by java.util.regex instead.
+        assertEquals(FormValidation.Kind.WARNING, descriptor.doCheckRegexp("(a)\\1", re2j).kind);
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckRegexp("(?P<name>a)", re2j).kind);
+        assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckRegexp("(a", re2j).kind);
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckRegexp("", re2j).kind);
+    }
 }
@@ -1,7 +1,10 @@
 package hudson.plugins.textfinder;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import hudson.model.Result;
 import java.io.File;
+import java.util.Collections;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -310,6 +313,97 @@ class TextFinderPublisherPipelineTest {
         rule.assertLogContains("Setting build result to 'UNSTABLE'.", build);
     }
 
+    @Test
+    void failureIfFoundInFileWithRe2j(JenkinsRule rule) throws Exception {
+        WorkflowJob project = rule.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node {\n"
+                        + "  writeFile file: '"
+                        + TestUtils.FILE_SET
+                        + "', text: '"
+                        + TestUtils.UNIQUE_TEXT
+                        + "'\n"
+                        + "  findText(textFinders: [textFinder(regexp: 'fo+b.r', fileSet: '"
+                        + TestUtils.FILE_SET
+                        + "', regexEngine: 'RE2J')])\n"
+                        + "}\n",
+                true));
+        WorkflowRun build = rule.buildAndAssertStatus(Result.FAILURE, project);
+        TestUtils.assertFileContainsMatch(
+                new File(TestUtils.getWorkspace(build), TestUtils.FILE_SET), TestUtils.UNIQUE_TEXT, rule, build);
+        rule.assertLogNotContains("falling back to java.util.regex", build);
+        rule.assertLogContains("Setting build result to 'FAILURE'.", build);
+    }
+
+    @Test
+    void re2jFallsBackToJavaForUnsupportedConstructs(JenkinsRule rule) throws Exception {
+        WorkflowJob project = rule.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node {\n"
+                        + "  writeFile file: '"
+                        + TestUtils.FILE_SET
+                        + "', text: '"
+                        + TestUtils.UNIQUE_TEXT
+                        + "'\n"
+                        + "  findText(textFinders: [textFinder(regexp: 'foo(?=bar)', fileSet: '"
+                        + TestUtils.FILE_SET
+                        + "', regexEngine: 'RE2J', alsoCheckConsoleOutput: true)])\n"
+                        + "}\n",
+                true));
+        WorkflowRun build = rule.buildAndAssertStatus(Result.FAILURE, project);
+        // Reported once, although the pattern is searched in both the file set and the console output.
+        assertEquals(
+                1,
+                Collections.frequency(
+                        build.getLog(Integer.MAX_VALUE),
+                        "[Text Finder] Regular expression 'foo(?=bar)' is not supported by RE2/J; falling back to"
+                                + " java.util.regex"));
+        TestUtils.assertFileContainsMatch(
+                new File(TestUtils.getWorkspace(build), TestUtils.FILE_SET), TestUtils.UNIQUE_TEXT, rule, build);
+        rule.assertLogContains("Setting build result to 'FAILURE'.", build);
+    }
+
+    @Test
+    void searchOnlyConsoleOfStage(JenkinsRule rule) throws Exception {
+        WorkflowJob project = rule.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "parallel(build: { testEcho '"
+                        + TestUtils.UNIQUE_TEXT
+                        + "' }, test: { testEcho 'nothing to see here' })\n"
+                        + "node {\n"
+                        + "  findText(textFinders: [\n"
+                        + "    textFinder(regexp: '"
+                        + TestUtils.UNIQUE_TEXT
+                        + "', alsoCheckConsoleOutput: true, consoleStage: 'test'),\n"
+                        + "    textFinder(regexp: '"
+                        + TestUtils.UNIQUE_TEXT
+                        + "', alsoCheckConsoleOutput: true, consoleStage: 'build', buildResult: 'UNSTABLE')])\n"
+                        + "}\n",
+                true));
+        WorkflowRun build = rule.buildAndAssertStatus(Result.UNSTABLE, project);
+        rule.assertLogContains("[Text Finder] Searching console output of stage 'test'...", build);
+        rule.assertLogContains("[Text Finder] Searching console output of stage 'build'...", build);
+        rule.assertLogContains(
+                "Finished searching for pattern '" + TestUtils.UNIQUE_TEXT + "' in console output of stage 'test'.",
+                build);
+        rule.assertLogContains("Setting build result to 'UNSTABLE'.", build);
+        rule.assertLogNotContains("Setting build result to 'FAILURE'.", build);
+    }
+
+    @Test
+    void unstableIfStageNotFound(JenkinsRule rule) throws Exception {
+        WorkflowJob project = rule.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node {\n"
+                        + "  findText(textFinders: [textFinder(regexp: '"
+                        + TestUtils.UNIQUE_TEXT
+                        + "', alsoCheckConsoleOutput: true, consoleStage: 'missing')])\n"
+                        + "}\n",
+                true));
+        WorkflowRun build = rule.buildAndAssertStatus(Result.UNSTABLE, project);
+        rule.assertLogContains("[Text Finder] Stage 'missing' not found", build);
+    }
+
     @Test
     void successIfFoundInConsole(JenkinsRule rule) throws Exception {
         WorkflowJob project = rule.createProject(WorkflowJob.class);